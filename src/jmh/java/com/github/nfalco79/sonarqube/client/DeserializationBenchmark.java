@@ -0,0 +1,89 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.github.nfalco79.sonarqube.client.internal.rest.ComponentsReader;
+import com.github.nfalco79.sonarqube.client.internal.rest.PaginatedResponse.Paging;
+import com.github.nfalco79.sonarqube.client.internal.rest.ProjectSearchResponse;
+import com.github.nfalco79.sonarqube.client.internal.rest.WebhookResponse;
+import com.github.nfalco79.sonarqube.client.model.Project;
+
+/**
+ * Deserialisation of realistic response payloads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DeserializationBenchmark {
+
+    @Param({ "100", "500" })
+    private int components;
+
+    private byte[] projectsPage;
+    private byte[] webhooks;
+    private ObjectMapper objectMapper;
+    private ObjectReader pagingReader;
+    private ObjectReader projectReader;
+
+    @Setup
+    public void setup() {
+        objectMapper = new ObjectMapper();
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        pagingReader = objectMapper.readerFor(Paging.class);
+        projectReader = objectMapper.readerFor(Project.class);
+        projectsPage = Payloads.projects(1, components, components * 10).getBytes(StandardCharsets.UTF_8);
+        webhooks = Payloads.webhooks(components / 10).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public ProjectSearchResponse projectSearchResponse() throws IOException {
+        return objectMapper.readValue(new ByteArrayInputStream(projectsPage), ProjectSearchResponse.class);
+    }
+
+    @Benchmark
+    public Paging projectSearchStreaming(Blackhole blackhole) throws IOException {
+        return new ComponentsReader<Project>(pagingReader, projectReader, blackhole::consume).read(new ByteArrayInputStream(projectsPage));
+    }
+
+    @Benchmark
+    public WebhookResponse webhookResponse() throws IOException {
+        return objectMapper.readValue(new ByteArrayInputStream(webhooks), WebhookResponse.class);
+    }
+}
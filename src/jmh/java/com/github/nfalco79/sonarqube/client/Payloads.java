@@ -0,0 +1,60 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+/**
+ * Generates JSON payloads shaped like the responses of a Sonarqube server.
+ */
+final class Payloads {
+
+    private Payloads() {
+    }
+
+    static String projects(int pageIndex, int pageSize, int total) {
+        int first = (pageIndex - 1) * pageSize;
+        int last = Math.min(first + pageSize, total);
+        StringBuilder json = new StringBuilder(256 * Math.max(0, last - first) + 128);
+        json.append("{\"paging\":{\"pageIndex\":").append(pageIndex) //
+                .append(",\"pageSize\":").append(pageSize) //
+                .append(",\"total\":").append(total).append("},\"components\":[");
+        for (int i = first; i < last; i++) {
+            if (i > first) {
+                json.append(',');
+            }
+            json.append("{\"key\":\"com.acme:project-").append(i) //
+                    .append("\",\"name\":\"Project ").append(i) //
+                    .append("\",\"qualifier\":\"TRK\",\"visibility\":\"private\"") //
+                    .append(",\"lastAnalysisDate\":\"2022-01-21T11:12:06+0100\"") //
+                    .append(",\"revision\":\"5a76333e1081afc0405c23260b8c7c7578d7").append(String.format("%04x", i & 0xFFFF)).append("\"}");
+        }
+        return json.append("]}").toString();
+    }
+
+    static String webhooks(int count) {
+        StringBuilder json = new StringBuilder("{\"webhooks\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"key\":\"AX8MFZxKIQ7HBt-oGa").append(i) //
+                    .append("\",\"name\":\"Jenkins Integration ").append(i) //
+                    .append("\",\"url\":\"https://ci.acme.com/jenkins/sonarqube-webhook/\"") //
+                    .append(",\"latestDelivery\":{\"id\":\"AX8MLbok9hzCSsLzFN8d\",\"at\":\"2022-02-18T10:33:17+0100\"") //
+                    .append(",\"success\":true,\"httpStatus\":200,\"durationMs\":21}}");
+        }
+        return json.append("]}").toString();
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.nfalco79.sonarqube.client.Credentials.CredentialsBuilder;
+import com.github.nfalco79.sonarqube.client.SonarqubeStubServer.Latency;
+import com.github.nfalco79.sonarqube.client.model.Project;
+
+/**
+ * End to end pagination of /api/projects/search against the stub server
+ * with a fixed server side latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ProjectsBenchmark {
+
+    @Param({ "1000", "20000" })
+    private int projects;
+
+    @Param({ "1", "4" })
+    private int parallelism;
+
+    @Param({ "0", "20" })
+    private int latency;
+
+    private SonarqubeStubServer server;
+    private SonarqubeServerClient client;
+
+    @Setup
+    public void setup() throws IOException {
+        server = new SonarqubeStubServer(projects);
+        server.setLatency(Latency.fixed(Duration.ofMillis(latency)));
+        client = new SonarqubeServerClient(server.getURL(), CredentialsBuilder.apiToken("0123456789"));
+        client.setParallelism(parallelism);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public List<Project> getProjects() throws ClientException {
+        return client.getProjects();
+    }
+
+    @Benchmark
+    public long streamProjects() {
+        try (Stream<Project> stream = client.streamProjects()) {
+            return stream.count();
+        }
+    }
+
+    @Benchmark
+    public void forEachProject(Blackhole blackhole) throws ClientException {
+        client.forEachProject(null, blackhole::consume);
+    }
+}
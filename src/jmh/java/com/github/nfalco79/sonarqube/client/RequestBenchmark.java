@@ -0,0 +1,73 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.nfalco79.sonarqube.client.Credentials.CredentialsBuilder;
+
+/**
+ * URI expansion and request construction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RequestBenchmark {
+
+    private static final String SERVER_URL = "http://localhost:9000";
+
+    private final Credentials credentials = CredentialsBuilder.basic("user", "password");
+
+    @Benchmark
+    public String expandProjectsSearch() {
+        return SonarqubeServerClient.PROJECTS_SEARCH.set(SonarqubeServerClient.QUERY_PARAM_QUERY, "calendar") //
+                .set(SonarqubeServerClient.QUERY_PARAM_PAGE, 3) //
+                .set(SonarqubeServerClient.QUERY_PARAM_PAGESIZE, 500) //
+                .expand(SERVER_URL);
+    }
+
+    @Benchmark
+    public String expandWebhookCreate() {
+        return SonarqubeServerClient.WEBHOOK_CREATE.set(SonarqubeServerClient.QUERY_PARAM_PRJ, "com.acme:calendar.parent") //
+                .set(SonarqubeServerClient.QUERY_PARAM_WEBHOOK_NAME, "Jenkins Integration") //
+                .set(SonarqubeServerClient.QUERY_PARAM_WEBHOOK_URL, "https://ci.acme.com/jenkins/sonarqube-webhook/") //
+                .set(SonarqubeServerClient.QUERY_PARAM_SECRET, "mysecret") //
+                .expand(SERVER_URL);
+    }
+
+    @Benchmark
+    public HttpGet buildRequest() {
+        HttpGet request = new HttpGet(SonarqubeServerClient.ALM_SETTINGS.set(SonarqubeServerClient.QUERY_PARAM_PRJ, "com.acme:calendar.parent") //
+                .expand(SERVER_URL));
+        request.addHeader(SonarqubeServerClient.ACCEPT_JSON);
+        credentials.apply(request);
+        return request;
+    }
+}
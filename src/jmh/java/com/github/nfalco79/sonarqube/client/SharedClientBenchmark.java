@@ -0,0 +1,76 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.nfalco79.sonarqube.client.Credentials.CredentialsBuilder;
+import com.github.nfalco79.sonarqube.client.model.ALMSettings;
+import com.github.nfalco79.sonarqube.client.model.Webhook;
+
+/**
+ * Many threads sharing the same client instance.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(16)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SharedClientBenchmark {
+
+    private SonarqubeStubServer server;
+    private SonarqubeServerClient client;
+
+    @Setup
+    public void setup() throws IOException {
+        server = new SonarqubeStubServer(1000);
+        client = new SonarqubeServerClient(server.getURL(), CredentialsBuilder.apiToken("0123456789"));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public ALMSettings getALMSettings() throws ClientException {
+        return client.getALMSettings(SonarqubeStubServer.projectKey(ThreadLocalRandom.current().nextInt(1000)));
+    }
+
+    @Benchmark
+    public List<Webhook> getWebhooks() throws ClientException {
+        return client.getWebhooks(SonarqubeStubServer.projectKey(ThreadLocalRandom.current().nextInt(1000)));
+    }
+}
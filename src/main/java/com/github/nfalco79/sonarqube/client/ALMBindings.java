@@ -0,0 +1,89 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.nfalco79.sonarqube.client.model.ALMSettings;
+
+/**
+ * Result of a bulk lookup of the ALM settings of many projects.
+ *
+ * @author Nikolas Falco
+ * @see SonarqubeServerClient#getALMSettings(java.util.Collection)
+ */
+public class ALMBindings {
+
+    private final Map<String, ALMSettings> settings = new LinkedHashMap<>();
+    private final Map<String, ClientException> failures = new LinkedHashMap<>();
+    private final Map<String, Set<String>> projectsByRepository = new LinkedHashMap<>();
+
+    /* package */ void add(String projectKey, ALMSettings almSettings) {
+        settings.put(projectKey, almSettings);
+        if (almSettings != null && almSettings.getRepository() != null) {
+            projectsByRepository.computeIfAbsent(almSettings.getRepository(), repository -> new LinkedHashSet<>()).add(projectKey);
+        }
+    }
+
+    /* package */ void fail(String projectKey, ClientException error) {
+        failures.put(projectKey, error);
+    }
+
+    /**
+     * Returns the ALM settings of each project that has been retrieved with
+     * success.
+     *
+     * @return a map of ALM settings by project key
+     */
+    public Map<String, ALMSettings> getSettings() {
+        return Collections.unmodifiableMap(settings);
+    }
+
+    /**
+     * Returns the error for each project whose ALM settings could not be
+     * retrieved, for example a 404 if the project is not bound to any ALM or
+     * a 403 if the user has not permission on the project.
+     *
+     * @return a map of errors by project key
+     */
+    public Map<String, ClientException> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Returns the keys of the projects bound to each repository.
+     *
+     * @return a map of project keys by repository
+     */
+    public Map<String, Set<String>> getProjectsByRepository() {
+        return Collections.unmodifiableMap(projectsByRepository);
+    }
+
+    /**
+     * Returns the keys of the projects bound to the given repository.
+     *
+     * @param repository the ALM repository
+     * @return the project keys, empty if no project is bound to the repository
+     */
+    public Set<String> getProjects(String repository) {
+        return Collections.unmodifiableSet(projectsByRepository.getOrDefault(repository, Collections.emptySet()));
+    }
+
+}
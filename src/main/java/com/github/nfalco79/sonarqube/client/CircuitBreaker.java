@@ -0,0 +1,280 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.time.Duration;
+
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+
+/**
+ * Stops sending requests to a server that is failing or too slow.
+ * <p>
+ * The outcome of the last {@link #getWindowSize()} requests is recorded. A
+ * request fails if no response is received or the server answers with a 5xx
+ * status; it is slow if the response takes longer than
+ * {@link #getSlowCallDuration()}. Once at least {@link #getMinimumCalls()}
+ * have been recorded, the breaker opens when the rate of failed or of slow
+ * requests reaches its threshold.
+ * <p>
+ * While open, requests fail immediately with a
+ * {@link CircuitBreakerOpenException}. After {@link #getOpenDuration()} the
+ * breaker is half open, the next request first checks the server health
+ * with {@link SonarqubeServerClient#testConnection()}: if the server answers
+ * the breaker closes, otherwise it stays open for another period.
+ *
+ * @author Nikolas Falco
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * The health check request, it is always sent and not recorded. Any
+     * response other than 5xx means the server is healthy.
+     */
+    /* package */ static class Probe extends HttpGet {
+
+        private static final long serialVersionUID = 1L;
+
+        Probe(String uri) {
+            super(uri);
+        }
+    }
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private double failureRateThreshold = 0.5;
+    private double slowCallRateThreshold = 1;
+    private Duration slowCallDuration = Duration.ofSeconds(10);
+    private int minimumCalls = 10;
+    private Duration openDuration = Duration.ofSeconds(30);
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    // ring buffer of the outcomes of the last calls
+    private byte[] outcomes = new byte[20];
+    private int next;
+    private int calls;
+    private int failures;
+    private int slowCalls;
+
+    /**
+     * The rate of failed requests that opens the breaker.
+     *
+     * @return a rate between 0 and 1
+     */
+    public double getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    public void setFailureRateThreshold(double failureRateThreshold) {
+        if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+            throw new IllegalArgumentException("failureRateThreshold must be between 0 and 1");
+        }
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    /**
+     * The rate of slow requests that opens the breaker.
+     *
+     * @return a rate between 0 and 1
+     */
+    public double getSlowCallRateThreshold() {
+        return slowCallRateThreshold;
+    }
+
+    public void setSlowCallRateThreshold(double slowCallRateThreshold) {
+        if (slowCallRateThreshold <= 0 || slowCallRateThreshold > 1) {
+            throw new IllegalArgumentException("slowCallRateThreshold must be between 0 and 1");
+        }
+        this.slowCallRateThreshold = slowCallRateThreshold;
+    }
+
+    /**
+     * The time after which a response is slow.
+     *
+     * @return the slow call duration
+     */
+    public Duration getSlowCallDuration() {
+        return slowCallDuration;
+    }
+
+    public void setSlowCallDuration(Duration slowCallDuration) {
+        this.slowCallDuration = slowCallDuration;
+    }
+
+    /**
+     * The number of recorded requests the rates are computed on.
+     *
+     * @return the size of the sliding window
+     */
+    public synchronized int getWindowSize() {
+        return outcomes.length;
+    }
+
+    /**
+     * Sets the size of the sliding window, the recorded requests are
+     * discarded.
+     *
+     * @param windowSize the number of recorded requests
+     */
+    public synchronized void setWindowSize(int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("windowSize must be positive");
+        }
+        outcomes = new byte[windowSize];
+        reset();
+    }
+
+    /**
+     * The number of requests to record before the breaker can open.
+     *
+     * @return the minimum number of calls
+     */
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+
+    public void setMinimumCalls(int minimumCalls) {
+        if (minimumCalls < 1) {
+            throw new IllegalArgumentException("minimumCalls must be positive");
+        }
+        this.minimumCalls = minimumCalls;
+    }
+
+    /**
+     * How long the breaker stays open before the server health is checked.
+     *
+     * @return the open duration
+     */
+    public Duration getOpenDuration() {
+        return openDuration;
+    }
+
+    public void setOpenDuration(Duration openDuration) {
+        this.openDuration = openDuration;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Returns if requests can be sent.
+     *
+     * @return {@code true} if the breaker is closed, {@code false} otherwise
+     */
+    /* package */ synchronized boolean allowRequest() {
+        return state == State.CLOSED;
+    }
+
+    /**
+     * Moves an open breaker to half open once the open duration has elapsed,
+     * only one caller is in charge of the health check.
+     *
+     * @return {@code true} if the caller must check the server health,
+     *         {@code false} otherwise
+     */
+    /* package */ synchronized boolean startProbe() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openDuration.toNanos()) {
+            state = State.HALF_OPEN;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Closes the breaker if the server is healthy, otherwise opens it again.
+     *
+     * @param healthy the result of the health check
+     */
+    /* package */ synchronized void onProbe(boolean healthy) {
+        if (healthy) {
+            state = State.CLOSED;
+            reset();
+        } else {
+            open();
+        }
+    }
+
+    /**
+     * Moves the breaker back to open when the health check has been aborted
+     * by its caller, the next caller checks the server health at once.
+     */
+    /* package */ synchronized void onProbeAborted() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+        }
+    }
+
+    /**
+     * Returns how long the breaker stays open.
+     *
+     * @return the time before the next health check
+     */
+    /* package */ synchronized Duration getRemainingOpen() {
+        if (state == State.CLOSED) {
+            return Duration.ZERO;
+        }
+        long remaining = openDuration.toNanos() - (System.nanoTime() - openedAt);
+        return Duration.ofNanos(Math.max(0, remaining));
+    }
+
+    /**
+     * Records the outcome of a request.
+     *
+     * @param failed if no response or a 5xx response was received
+     * @param duration nanoseconds from request sent to response received
+     */
+    /* package */ synchronized void record(boolean failed, long duration) {
+        if (state != State.CLOSED) {
+            return;
+        }
+        byte outcome = (byte) ((failed ? FAILED : 0) | (duration > slowCallDuration.toNanos() ? SLOW : 0));
+        if (calls == outcomes.length) {
+            byte evicted = outcomes[next];
+            failures -= evicted & FAILED;
+            slowCalls -= (evicted & SLOW) >> 1;
+        } else {
+            calls++;
+        }
+        outcomes[next] = outcome;
+        next = (next + 1) % outcomes.length;
+        failures += outcome & FAILED;
+        slowCalls += (outcome & SLOW) >> 1;
+
+        if (calls >= minimumCalls //
+                && (failures >= failureRateThreshold * calls || slowCalls >= slowCallRateThreshold * calls)) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        reset();
+    }
+
+    private void reset() {
+        next = 0;
+        calls = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.time.Duration;
+
+/**
+ * Raised without sending the request when the circuit breaker of the client
+ * is open because the server is failing.
+ *
+ * @author Nikolas Falco
+ * @see CircuitBreaker
+ */
+@SuppressWarnings("serial")
+public class CircuitBreakerOpenException extends ClientException {
+
+    private final Duration retryAfter;
+
+    /**
+     * Create an exception for the given server.
+     *
+     * @param serverURL the URL of the failing server
+     * @param retryAfter how long before the server is probed again
+     */
+    public CircuitBreakerOpenException(String serverURL, Duration retryAfter) {
+        super("Circuit breaker open for " + serverURL + ", next health check in " + retryAfter.toMillis() + "ms", null);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * The time left before the server is probed again.
+     *
+     * @return the remaining open time
+     */
+    @Override
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+}
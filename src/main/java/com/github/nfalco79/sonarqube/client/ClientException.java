@@ -16,9 +16,12 @@
 package com.github.nfalco79.sonarqube.client;
 
 import java.io.IOException;
+import java.time.Duration;
 
-import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.ParseException;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
 
@@ -32,6 +35,7 @@ public class ClientException extends IOException {
 
     private int status;
     private String response;
+    private Duration retryAfter;
 
     /**
      * Create an exception with the given message.
@@ -39,9 +43,13 @@ public class ClientException extends IOException {
      * @param response
      *            the client response error
      */
-    public ClientException(CloseableHttpResponse response) {
+    public ClientException(ClassicHttpResponse response) {
         super("HTTP " + response.getCode());
         this.status = response.getCode();
+        Header retryAfterHeader = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+        if (retryAfterHeader != null) {
+            this.retryAfter = RetryPolicy.parseRetryAfter(retryAfterHeader.getValue());
+        }
         try {
             HttpEntity entity = response.getEntity();
             if (entity != null) {
@@ -51,6 +59,35 @@ public class ClientException extends IOException {
         }
     }
 
+    /**
+     * Create an exception for the given HTTP status.
+     *
+     * @param status
+     *            the HTTP status code of the response
+     * @param response
+     *            the body of the response, may be {@code null}
+     */
+    public ClientException(int status, String response) {
+        this(status, response, null);
+    }
+
+    /**
+     * Create an exception for the given HTTP status.
+     *
+     * @param status
+     *            the HTTP status code of the response
+     * @param response
+     *            the body of the response, may be {@code null}
+     * @param retryAfter
+     *            the delay requested by the server, may be {@code null}
+     */
+    public ClientException(int status, String response, Duration retryAfter) {
+        super("HTTP " + status);
+        this.status = status;
+        this.response = response;
+        this.retryAfter = retryAfter;
+    }
+
     @Override
     public String getMessage() {
         String message = super.getMessage();
@@ -75,4 +112,22 @@ public class ClientException extends IOException {
         return status;
     }
 
+    /**
+     * The body of the error response.
+     *
+     * @return the response body, {@code null} if missing
+     */
+    public String getResponse() {
+        return response;
+    }
+
+    /**
+     * The delay the server asked to wait before sending the request again.
+     *
+     * @return the value of the Retry-After header, {@code null} if missing
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * An iterator that holds resources, like a request in flight, until it is
+ * exhausted or closed.
+ * <p>
+ * Close it when the iteration can stop early, best with a
+ * try-with-resources statement.
+ *
+ * @author Nikolas Falco
+ * @param <T> the element type
+ */
+public interface CloseableIterator<T> extends Iterator<T>, Closeable {
+
+    /**
+     * Releases the resources of the iterator, the following calls to
+     * {@link #hasNext()} return {@code false}.
+     */
+    @Override
+    void close();
+
+}
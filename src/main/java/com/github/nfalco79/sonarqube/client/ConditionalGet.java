@@ -0,0 +1,59 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.core5.http.HttpHeaders;
+
+/**
+ * A GET request that revalidates a cached response using its entity tag.
+ * <p>
+ * Carries back the entity tag of the response and whether the server
+ * answered that the cached response is not modified.
+ *
+ * @author Nikolas Falco
+ */
+/* package */ class ConditionalGet extends HttpGet {
+
+    private static final long serialVersionUID = 1L;
+
+    private String etag;
+    private boolean notModified;
+
+    ConditionalGet(String uri, String etag) {
+        super(uri);
+        if (etag != null) {
+            setHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+    }
+
+    public String getETag() {
+        return etag;
+    }
+
+    void setETag(String etag) {
+        this.etag = etag;
+    }
+
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    void setNotModified(boolean notModified) {
+        this.notModified = notModified;
+    }
+
+}
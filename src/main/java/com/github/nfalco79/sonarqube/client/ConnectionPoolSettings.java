@@ -0,0 +1,131 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.time.Duration;
+
+/**
+ * Settings of the connection pool used by {@link SonarqubeServerClient}.
+ *
+ * @author Nikolas Falco
+ */
+public class ConnectionPoolSettings {
+
+    private int maxTotal = 50;
+    private int maxPerRoute = 50;
+    private Duration evictIdleAfter = Duration.ofSeconds(30);
+    private Duration validateAfterInactivity = Duration.ofSeconds(2);
+    private Duration timeToLive;
+    private Duration connectTimeout = Duration.ofSeconds(10);
+    private Duration socketTimeout = Duration.ofMinutes(1);
+
+    /**
+     * The maximum number of connections opened by the client.
+     *
+     * @return max connections
+     */
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public void setMaxTotal(int maxTotal) {
+        this.maxTotal = maxTotal;
+    }
+
+    /**
+     * The maximum number of connections opened to the same host.
+     *
+     * @return max connections per route
+     */
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    public void setMaxPerRoute(int maxPerRoute) {
+        this.maxPerRoute = maxPerRoute;
+    }
+
+    /**
+     * Connections idle in the pool longer than this are closed by a
+     * background thread, {@code null} disables the eviction.
+     *
+     * @return idle time before eviction
+     */
+    public Duration getEvictIdleAfter() {
+        return evictIdleAfter;
+    }
+
+    public void setEvictIdleAfter(Duration evictIdleAfter) {
+        this.evictIdleAfter = evictIdleAfter;
+    }
+
+    /**
+     * Connections not used for this period are checked to be still open
+     * before being reused.
+     *
+     * @return inactivity period before validation
+     */
+    public Duration getValidateAfterInactivity() {
+        return validateAfterInactivity;
+    }
+
+    public void setValidateAfterInactivity(Duration validateAfterInactivity) {
+        this.validateAfterInactivity = validateAfterInactivity;
+    }
+
+    /**
+     * The maximum life time of a connection, {@code null} means unlimited.
+     *
+     * @return connection time to live
+     */
+    public Duration getTimeToLive() {
+        return timeToLive;
+    }
+
+    public void setTimeToLive(Duration timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * The maximum time to establish a connection, {@code null} means the
+     * system default.
+     *
+     * @return connect timeout
+     */
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * The maximum time without data while waiting for or reading a response,
+     * {@code null} means no timeout. It does not limit the total time of a
+     * slow response that keeps sending data, use a {@link Deadline} to bound
+     * the whole operation.
+     *
+     * @return socket timeout
+     */
+    public Duration getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    public void setSocketTimeout(Duration socketTimeout) {
+        this.socketTimeout = socketTimeout;
+    }
+}
@@ -18,8 +18,10 @@ package com.github.nfalco79.sonarqube.client;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 
+import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.message.BasicHeader;
 
 /**
  * This object represent the credentials to use in {@link SonarqubeServerClient}.
@@ -41,31 +43,37 @@ public abstract class Credentials {
     }
 
     /* package */ static class UserPassword extends Credentials {
+        // encoded once, credentials are immutable
+        private final Header authorization;
+
         private UserPassword(String user, String password) {
             super(user, password);
+            this.authorization = getBasicAuth(user + ":" + password);
         }
 
         @Override
         public void apply(HttpRequest request) {
-            request.setHeader(HttpHeaders.AUTHORIZATION, getBasicAuth(this));
+            request.setHeader(authorization);
         }
     }
 
     /* package */ static class ApiToken extends Credentials {
+        // encoded once, credentials are immutable
+        private final Header authorization;
+
         private ApiToken(String password) {
             super(null, password);
+            this.authorization = getBasicAuth(password + ":");
         }
 
         @Override
         public void apply(HttpRequest request) {
-            String auth = Base64.getEncoder().encodeToString((getPassword() + ":").getBytes(StandardCharsets.UTF_8));
-            request.setHeader(HttpHeaders.AUTHORIZATION, "Basic " + auth);
+            request.setHeader(authorization);
         }
     }
 
-    private static String getBasicAuth(Credentials credentials) {
-        return "Basic " + Base64.getEncoder().encodeToString((credentials.getUser() + ":"
-                + credentials.getPassword()).getBytes(StandardCharsets.UTF_8));
+    private static Header getBasicAuth(String userInfo) {
+        return new BasicHeader(HttpHeaders.AUTHORIZATION, "Basic " + Base64.getEncoder().encodeToString(userInfo.getBytes(StandardCharsets.UTF_8)));
     }
 
     private String user;
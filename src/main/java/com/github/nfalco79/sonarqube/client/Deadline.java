@@ -0,0 +1,349 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.hc.core5.concurrent.Cancellable;
+
+/**
+ * Bounds the time of the operations of a {@link SonarqubeServerClient} and
+ * lets the caller cancel them.
+ * <p>
+ * A deadline applies to all requests of an operation, including the pages
+ * fetched by the workers and the retries. When the deadline expires or it is
+ * cancelled the requests in flight are aborted, which frees their
+ * connections, and the operation fails with a {@link ClientException} caused
+ * by a {@link TimeoutException} or a {@link CancellationException}.
+ *
+ * <pre>
+ * Deadline deadline = Deadline.after(Duration.ofSeconds(2));
+ * List&lt;Project&gt; projects = client.withDeadline(deadline, SonarqubeServerClient::getProjects);
+ * </pre>
+ *
+ * A deadline can be shared by many operations, once expired or cancelled
+ * it stays so. The timer that aborts the requests in flight runs only while
+ * an operation uses the deadline.
+ *
+ * @author Nikolas Falco
+ */
+public final class Deadline {
+
+    // created at the first deadline with a timeout
+    private static class Timer {
+        private static final ScheduledThreadPoolExecutor INSTANCE = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "sonarqube-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        static {
+            INSTANCE.setRemoveOnCancelPolicy(true);
+        }
+    }
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long expiresAt;
+    private final Duration timeout;
+    private final Deadline parent;
+    private final Cancellable cancelHook = () -> {
+        cancel();
+        return true;
+    };
+    private final Set<Cancellable> inFlight = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile boolean cancelled;
+    private volatile boolean expired;
+    // guarded by this
+    private int users;
+    private ScheduledFuture<?> timer;
+
+    private Deadline(Duration timeout) {
+        this.timeout = timeout;
+        this.expiresAt = timeout != null ? System.nanoTime() + timeout.toNanos() : 0;
+        this.parent = null;
+    }
+
+    private Deadline(Deadline parent) {
+        this.timeout = parent.timeout;
+        this.expiresAt = parent.expiresAt;
+        this.parent = parent;
+    }
+
+    /**
+     * Creates a deadline that expires after the given time.
+     *
+     * @param timeout the time available to the operations
+     * @return a new deadline
+     */
+    public static Deadline after(Duration timeout) {
+        return new Deadline(timeout);
+    }
+
+    /**
+     * Creates a deadline that never expires, it can only be cancelled.
+     *
+     * @return a new cancellation token
+     */
+    public static Deadline never() {
+        return new Deadline((Duration) null);
+    }
+
+    /**
+     * Aborts the requests in flight and makes the following ones fail.
+     */
+    public void cancel() {
+        cancelled = true;
+        done.countDown();
+        stopTimer();
+        for (Cancellable request : inFlight) {
+            request.cancel();
+        }
+    }
+
+    private void expire() {
+        expired = true;
+        cancel();
+    }
+
+    /**
+     * Returns if the operations must stop because the deadline has expired
+     * or it has been cancelled.
+     *
+     * @return {@code true} if cancelled, {@code false} otherwise
+     */
+    public boolean isCancelled() {
+        return cancelled || timeout != null && expiresAt - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Returns if the deadline has expired.
+     *
+     * @return {@code true} if the time is over, {@code false} otherwise
+     */
+    public boolean isExpired() {
+        return expired || timeout != null && expiresAt - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Returns the time left.
+     *
+     * @return the remaining time, never negative, or {@code null} if the
+     *         deadline has no timeout
+     */
+    public Duration getRemaining() {
+        return timeout != null ? Duration.ofNanos(Math.max(0, expiresAt - System.nanoTime())) : null;
+    }
+
+    /**
+     * Fails if the operations must stop.
+     *
+     * @throws ClientException if the deadline has expired or it has been
+     *         cancelled
+     */
+    /* package */ void check() throws ClientException {
+        if (parent != null) {
+            parent.check();
+        }
+        if (isExpired()) {
+            throw exceeded();
+        }
+        if (cancelled) {
+            throw new ClientException("Operation cancelled", new CancellationException());
+        }
+    }
+
+    /**
+     * Waits for the given time unless the deadline expires before.
+     *
+     * @param nanos the time to wait
+     * @throws ClientException if the deadline expires or it is cancelled
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    /* package */ void sleep(long nanos) throws ClientException, InterruptedException {
+        check();
+        if (timeout != null && nanos > expiresAt - System.nanoTime()) {
+            // fails at once rather than waiting for a certain timeout, the
+            // deadline is left untouched because other operations may share it
+            throw exceeded();
+        }
+        if (!done.await(nanos, TimeUnit.NANOSECONDS) && isExpired() && !cancelled) {
+            // woken up before the timer, aborts the requests in flight as it would do
+            expire();
+        }
+        check();
+    }
+
+    private ClientException exceeded() {
+        return new ClientException("Deadline of " + timeout.toMillis() + "ms exceeded", new TimeoutException());
+    }
+
+    /**
+     * Marks the start of an operation that uses this deadline, the first
+     * one arms the timer that aborts the requests in flight at expiration.
+     * Each call must be followed by {@link #end()}.
+     */
+    /* package */ void begin() {
+        if (timeout == null || parent != null) {
+            // forks are aborted by the timer of their parent
+            return;
+        }
+        synchronized (this) {
+            long remaining = expiresAt - System.nanoTime();
+            if (users++ == 0 && timer == null && !cancelled && remaining > 0) {
+                timer = Timer.INSTANCE.schedule(this::expire, remaining, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Marks the end of an operation started by {@link #begin()}, the last
+     * one removes the timer so that a long deadline does not keep a task
+     * queued after its operations have completed.
+     */
+    /* package */ void end() {
+        if (timeout == null || parent != null) {
+            return;
+        }
+        synchronized (this) {
+            if (--users == 0) {
+                stopTimer();
+            }
+        }
+    }
+
+    private synchronized void stopTimer() {
+        if (timer != null) {
+            timer.cancel(false);
+            timer = null;
+        }
+    }
+
+    /**
+     * Registers a request to abort when the deadline expires or it is
+     * cancelled.
+     *
+     * @param request the request in flight
+     */
+    /* package */ void register(Cancellable request) {
+        inFlight.add(request);
+        if (cancelled) {
+            request.cancel();
+        }
+    }
+
+    /* package */ void unregister(Cancellable request) {
+        inFlight.remove(request);
+    }
+
+    /**
+     * Creates a deadline for the requests of a bulk operation that can be
+     * cancelled without affecting the deadline of the current thread. It
+     * expires and it is cancelled together with the current deadline, if
+     * any.
+     *
+     * @return a new deadline to close at the end of the operation
+     */
+    /* package */ static Deadline fork() {
+        Deadline parent = CURRENT.get();
+        if (parent == null) {
+            return never();
+        }
+        Deadline child = new Deadline(parent);
+        parent.register(child.cancelHook);
+        return child;
+    }
+
+    /**
+     * Detaches a deadline created by {@link #fork()} from its parent.
+     */
+    /* package */ void close() {
+        if (parent != null) {
+            parent.unregister(cancelHook);
+        }
+    }
+
+    /**
+     * Returns the deadline of the operation running in the current thread.
+     *
+     * @return the current deadline or {@code null} if none
+     */
+    /* package */ static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Sets the deadline of the operation running in the current thread.
+     *
+     * @param deadline the deadline, {@code null} to remove it
+     * @return the previous deadline
+     */
+    /* package */ static Deadline enter(Deadline deadline) {
+        Deadline previous = CURRENT.get();
+        if (deadline != null) {
+            CURRENT.set(deadline);
+        } else {
+            CURRENT.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * Binds the deadline of the current thread to a task that will run on
+     * another thread.
+     *
+     * @param <T> the type of result
+     * @param task the task
+     * @return the task that runs with the current deadline
+     */
+    /* package */ static <T> Callable<T> propagate(Callable<T> task) {
+        return propagate(CURRENT.get(), task);
+    }
+
+    /**
+     * Binds the given deadline to a task that will run on another thread.
+     *
+     * @param <T> the type of result
+     * @param deadline the deadline, may be {@code null}
+     * @param task the task
+     * @return the task that runs with the given deadline
+     */
+    /* package */ static <T> Callable<T> propagate(Deadline deadline, Callable<T> task) {
+        if (deadline == null) {
+            return task;
+        }
+        return () -> {
+            Deadline previous = enter(deadline);
+            deadline.begin();
+            try {
+                return task.call();
+            } finally {
+                deadline.end();
+                enter(previous);
+            }
+        };
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.github.nfalco79.sonarqube.client.model.Project;
+import com.github.nfalco79.sonarqube.client.model.Webhook;
+
+/**
+ * Sends the same operation to many Sonarqube servers concurrently.
+ * <p>
+ * The results of all servers are merged and tagged with the server of
+ * origin. An operation takes as long as the slowest server, or at most the
+ * timeout; a server that fails or is too slow makes the result partial
+ * without blocking the others.
+ *
+ * <pre>
+ * try (FederatedClient federation = FederatedClient.builder() //
+ *         .add("emea", "https://sonar.emea.acme.com", CredentialsBuilder.apiToken(emeaToken)) //
+ *         .add("apac", "https://sonar.apac.acme.com", CredentialsBuilder.apiToken(apacToken)) //
+ *         .timeout(Duration.ofSeconds(30)) //
+ *         .build()) {
+ *     FederatedResult&lt;Project&gt; projects = federation.getProjects();
+ * }
+ * </pre>
+ *
+ * @author Nikolas Falco
+ */
+public class FederatedClient implements Closeable {
+
+    /**
+     * An operation to send to a single server.
+     *
+     * @param <T> the type of result
+     */
+    @FunctionalInterface
+    public interface Query<T> {
+        T execute(SonarqubeServerClient client) throws ClientException;
+    }
+
+    /**
+     * Builds a federation of servers.
+     */
+    public static class Builder {
+        private final Map<String, SonarqubeServerClient> clients = new LinkedHashMap<>();
+        private Duration timeout;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a server with the default connection settings.
+         *
+         * @param name unique name that tags the results of this server
+         * @param serverURL the server URL
+         * @param credentials the credentials of the server
+         * @return this builder
+         */
+        public Builder add(String name, String serverURL, Credentials credentials) {
+            return add(name, new SonarqubeServerClient(serverURL, credentials));
+        }
+
+        /**
+         * Adds a server with an already configured client, the client is
+         * closed with the federation.
+         *
+         * @param name unique name that tags the results of this server
+         * @param client the client of the server
+         * @return this builder
+         */
+        public Builder add(String name, SonarqubeServerClient client) {
+            Objects.requireNonNull(name, "name");
+            Objects.requireNonNull(client, "client");
+            if (clients.putIfAbsent(name, client) != null) {
+                throw new IllegalArgumentException("Server " + name + " already added");
+            }
+            return this;
+        }
+
+        /**
+         * Sets how long to wait for the servers, the servers that have not
+         * answered in time are reported as failed.
+         *
+         * @param timeout the maximum time of an operation, {@code null} to
+         *        wait for all servers
+         * @return this builder
+         */
+        public Builder timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        public FederatedClient build() {
+            return new FederatedClient(clients, timeout);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final Logger logger = Logger.getLogger(FederatedClient.class.getName());
+
+    private final Map<String, SonarqubeServerClient> clients;
+    private final Duration timeout;
+    private ExecutorService executor;
+
+    private FederatedClient(Map<String, SonarqubeServerClient> clients, Duration timeout) {
+        this.clients = Collections.unmodifiableMap(new LinkedHashMap<>(clients));
+        this.timeout = timeout;
+    }
+
+    /**
+     * Returns the clients of the servers by name.
+     *
+     * @return the server clients
+     */
+    public Map<String, SonarqubeServerClient> getClients() {
+        return clients;
+    }
+
+    /**
+     * Gets all projects of all servers.
+     *
+     * @return the projects tagged with their server
+     * @throws ClientException if the current thread is interrupted
+     */
+    public FederatedResult<Project> getProjects() throws ClientException {
+        return queryAll(SonarqubeServerClient::getProjects);
+    }
+
+    /**
+     * Gets the projects of all servers that match the given search key.
+     *
+     * @param searchKey Limit search to component names that contain the
+     *        supplied string or component keys that contain the supplied string
+     * @return the projects tagged with their server
+     * @throws ClientException if the current thread is interrupted
+     */
+    public FederatedResult<Project> getProjects(String searchKey) throws ClientException {
+        return queryAll(client -> client.getProjects(searchKey));
+    }
+
+    /**
+     * Gets the global web hooks of all servers.
+     *
+     * @return the web hooks tagged with their server
+     * @throws ClientException if the current thread is interrupted
+     */
+    public FederatedResult<Webhook> getWebhooks() throws ClientException {
+        return queryAll(SonarqubeServerClient::getWebhooks);
+    }
+
+    /**
+     * Gets the ALM settings of the given projects from all servers. Projects
+     * unknown to a server are in the failures of its bindings.
+     *
+     * @param keys sonar project keys
+     * @return the bindings of each server
+     * @throws ClientException if the current thread is interrupted
+     */
+    public FederatedResult<ALMBindings> getALMSettings(Collection<String> keys) throws ClientException {
+        return query(client -> client.getALMSettings(keys));
+    }
+
+    /**
+     * Sends the given operation to all servers, each value of the returned
+     * collections becomes an item of the result.
+     *
+     * @param <T> the type of values
+     * @param query the operation
+     * @return the values tagged with their server
+     * @throws ClientException if the current thread is interrupted
+     */
+    public <T> FederatedResult<T> queryAll(Query<? extends Collection<T>> query) throws ClientException {
+        FederatedResult<T> result = new FederatedResult<>();
+        execute(query, (server, values) -> values.forEach(value -> result.add(server, value)), result::fail);
+        return result;
+    }
+
+    /**
+     * Sends the given operation to all servers, the value of each server
+     * becomes an item of the result.
+     *
+     * @param <T> the type of values
+     * @param query the operation
+     * @return the values tagged with their server
+     * @throws ClientException if the current thread is interrupted
+     */
+    public <T> FederatedResult<T> query(Query<T> query) throws ClientException {
+        FederatedResult<T> result = new FederatedResult<>();
+        execute(query, result::add, result::fail);
+        return result;
+    }
+
+    private interface Callback<V> {
+        void accept(String server, V value);
+    }
+
+    private <V> void execute(Query<V> query, Callback<V> onSuccess, Callback<ClientException> onFailure) throws ClientException {
+        Map<String, FutureTask<V>> tasks = new LinkedHashMap<>();
+        clients.forEach((server, client) -> {
+            FutureTask<V> task = new FutureTask<>(Deadline.propagate(() -> query.execute(client)));
+            tasks.put(server, task);
+            getExecutor().execute(task);
+        });
+        long deadline = timeout != null ? System.nanoTime() + timeout.toNanos() : 0;
+        try {
+            for (Map.Entry<String, FutureTask<V>> entry : tasks.entrySet()) {
+                String server = entry.getKey();
+                V value;
+                try {
+                    value = await(entry.getValue(), deadline);
+                } catch (ClientException e) {
+                    if (logger.isLoggable(Level.FINE)) {
+                        logger.log(Level.FINE, "Server " + server + " fails", e);
+                    }
+                    onFailure.accept(server, e);
+                    continue;
+                }
+                onSuccess.accept(server, value);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientException("Interrupted while waiting for servers", e);
+        } finally {
+            // interrupts the requests of the servers out of time
+            tasks.values().forEach(task -> task.cancel(true));
+        }
+    }
+
+    private <V> V await(FutureTask<V> task, long deadline) throws ClientException, InterruptedException {
+        try {
+            if (timeout == null) {
+                return task.get();
+            }
+            return task.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | CancellationException e) {
+            throw new ClientException("No response within " + timeout.toMillis() + "ms", null);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ClientException) {
+                throw (ClientException) cause;
+            }
+            throw new ClientException("Client fails to process request", cause);
+        }
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Workers.newVirtualThreadExecutor("sonarqube-federation-");
+        }
+        if (executor == null) {
+            AtomicInteger count = new AtomicInteger();
+            executor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "sonarqube-federation-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Closes the clients of all servers.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+        }
+        IOException error = null;
+        for (SonarqubeServerClient client : clients.values()) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
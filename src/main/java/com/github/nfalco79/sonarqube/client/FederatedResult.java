@@ -0,0 +1,132 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Result of an operation sent to all servers of a {@link FederatedClient}.
+ * <p>
+ * Each value is tagged with the name of the server it comes from. Servers
+ * that failed or did not answer in time are reported in the failures, so the
+ * result is partial instead of failing as a whole.
+ *
+ * @author Nikolas Falco
+ * @param <T> the type of values
+ */
+public class FederatedResult<T> {
+
+    /**
+     * A value with the server of origin.
+     *
+     * @param <T> the type of value
+     */
+    public static final class Item<T> {
+        private final String server;
+        private final T value;
+
+        /* package */ Item(String server, T value) {
+            this.server = server;
+            this.value = value;
+        }
+
+        /**
+         * Returns the name the server has been registered with.
+         *
+         * @return the server name
+         */
+        public String getServer() {
+            return server;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return server + ": " + value;
+        }
+    }
+
+    private final List<Item<T>> items = new ArrayList<>();
+    private final Map<String, ClientException> failures = new LinkedHashMap<>();
+
+    /* package */ void add(String server, T value) {
+        items.add(new Item<>(server, value));
+    }
+
+    /* package */ void fail(String server, ClientException error) {
+        failures.put(server, error);
+    }
+
+    /**
+     * Returns the values of all servers that answered with success, in the
+     * order the servers have been registered.
+     *
+     * @return the tagged values
+     */
+    public List<Item<T>> getItems() {
+        return Collections.unmodifiableList(items);
+    }
+
+    /**
+     * Returns a stream of the tagged values.
+     *
+     * @return the stream of values of all servers
+     */
+    public Stream<Item<T>> stream() {
+        return items.stream();
+    }
+
+    /**
+     * Returns the values without the server they come from.
+     *
+     * @return the values of all servers
+     */
+    public List<T> getValues() {
+        List<T> values = new ArrayList<>(items.size());
+        items.forEach(item -> values.add(item.getValue()));
+        return values;
+    }
+
+    /**
+     * Returns the error of each server that failed, a server that did not
+     * answer within the timeout fails with a {@link ClientException} without
+     * status.
+     *
+     * @return a map of errors by server name
+     */
+    public Map<String, ClientException> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Returns if some server has failed.
+     *
+     * @return {@code true} if the values do not come from all servers,
+     *         {@code false} otherwise
+     */
+    public boolean isPartial() {
+        return !failures.isEmpty();
+    }
+
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.hc.core5.http.HttpStatus;
+
+import com.github.nfalco79.sonarqube.client.ProjectChange.Type;
+import com.github.nfalco79.sonarqube.client.model.ALMSettings;
+import com.github.nfalco79.sonarqube.client.model.Project;
+import com.github.nfalco79.sonarqube.client.model.ProjectLink;
+
+/**
+ * Loads the {@link ProjectInventory} of a server from a local snapshot
+ * file, reading the server only when the snapshot is too old.
+ * <p>
+ * A snapshot younger than the maximum age is used as is. A snapshot older
+ * than that but still within the maximum staleness is returned immediately
+ * while a refresh runs in background. Otherwise, or if the snapshot is
+ * missing, unreadable or of another server, the inventory is read from the
+ * server before returning.
+ * <p>
+ * A refresh is incremental: the projects are synchronised with
+ * {@link ProjectSync} and links and ALM bindings are read again only for
+ * the projects added or analysed since the snapshot. A link or binding can
+ * change without a new analysis, so the details of all projects are read
+ * again once their last full read is older than the maximum age plus the
+ * maximum staleness. The refreshed inventory is written back to the
+ * snapshot file.
+ *
+ * <pre>
+ * InventoryLoader loader = new InventoryLoader(client, Paths.get("sonar-inventory.bin"));
+ * ProjectInventory inventory = loader.load();
+ * </pre>
+ *
+ * @author Nikolas Falco
+ */
+public class InventoryLoader {
+
+    private static final Duration DEFAULT_MAX_AGE = Duration.ofHours(1);
+    private static final Duration DEFAULT_MAX_STALE = Duration.ofDays(1);
+
+    private final Logger logger = Logger.getLogger(InventoryLoader.class.getName());
+
+    private final SonarqubeServerClient client;
+    private final Path file;
+    private final Object refreshLock = new Object();
+    private Duration maxAge = DEFAULT_MAX_AGE;
+    private Duration maxStale = DEFAULT_MAX_STALE;
+    private boolean links = true;
+    private boolean almBindings = true;
+    private volatile ProjectInventory inventory;
+    private CompletableFuture<ProjectInventory> refresh;
+
+    /**
+     * Creates a loader that keeps the inventory in the given file.
+     *
+     * @param client the client of the server
+     * @param file the snapshot file
+     */
+    public InventoryLoader(SonarqubeServerClient client, Path file) {
+        this.client = client;
+        this.file = file;
+    }
+
+    /**
+     * Returns the inventory following the freshness policy.
+     *
+     * @return the project inventory
+     * @throws ClientException in case of HTTP response from server different
+     *         than 20x codes
+     */
+    public ProjectInventory load() throws ClientException {
+        ProjectInventory current = inventory;
+        if (current == null) {
+            current = readSnapshot();
+        }
+        if (current != null) {
+            Duration age = Duration.between(current.getCreated(), Instant.now());
+            if (age.compareTo(maxAge) <= 0) {
+                return current;
+            }
+            if (age.compareTo(maxAge.plus(maxStale)) <= 0) {
+                refreshInBackground();
+                return current;
+            }
+        }
+        return refresh();
+    }
+
+    private ProjectInventory readSnapshot() {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            ProjectInventory snapshot = InventorySnapshot.read(file);
+            if (!client.getServerURL().equals(snapshot.getServerURL()) || !isComplete(snapshot)) {
+                logger.fine("Ignore inventory snapshot " + file + " of " + snapshot.getServerURL());
+                return null;
+            }
+            inventory = snapshot;
+            return snapshot;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Fail to read inventory snapshot " + file, e);
+            return null;
+        }
+    }
+
+    private boolean isComplete(ProjectInventory snapshot) {
+        return (!links || snapshot.hasLinks()) && (!almBindings || snapshot.hasALMBindings());
+    }
+
+    /**
+     * Reads the changes from the server and updates the snapshot file.
+     *
+     * @return the refreshed inventory
+     * @throws ClientException in case of HTTP response from server different
+     *         than 20x codes
+     */
+    public ProjectInventory refresh() throws ClientException {
+        synchronized (refreshLock) {
+            // the snapshot keeps milliseconds
+            Instant start = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+            ProjectInventory base = inventory != null ? inventory : readSnapshot();
+            boolean reuse = base != null && isComplete(base);
+            // details of unchanged projects are kept until they are too old
+            boolean reuseDetails = reuse && Duration.between(base.getDetailsRead(), start).compareTo(maxAge.plus(maxStale)) <= 0;
+
+            Set<String> changed = new LinkedHashSet<>();
+            ProjectSync sync = new ProjectSync(client, reuse ? base.getProjects() : Collections.emptyList());
+            sync.sync(change -> {
+                if (change.getType() != Type.REMOVED) {
+                    changed.add(change.getKey());
+                }
+            });
+
+            Map<String, List<ProjectLink>> projectLinks = links ? new HashMap<>() : null;
+            Map<String, ALMSettings> bindings = almBindings ? new HashMap<>() : null;
+            Set<String> toRead = changed;
+            if (reuseDetails) {
+                for (Project project : sync.getProjects()) {
+                    if (!changed.contains(project.getKey())) {
+                        copy(base, project.getKey(), projectLinks, bindings);
+                    }
+                }
+            } else {
+                toRead = new LinkedHashSet<>();
+                for (Project project : sync.getProjects()) {
+                    toRead.add(project.getKey());
+                }
+            }
+            if (links || almBindings) {
+                ClientException[] failure = new ClientException[1];
+                client.forEachConcurrently(toRead, this::readDetails, (key, details) -> {
+                    if (projectLinks != null) {
+                        projectLinks.put(key, details.links);
+                    }
+                    if (bindings != null && details.settings != null) {
+                        bindings.put(key, details.settings);
+                    }
+                }, (key, e) -> {
+                    if (failure[0] == null) {
+                        failure[0] = e;
+                    }
+                });
+                if (failure[0] != null) {
+                    throw failure[0];
+                }
+            }
+
+            Instant detailsRead = reuseDetails ? base.getDetailsRead() : start;
+            ProjectInventory result = new ProjectInventory(client.getServerURL(), start, detailsRead, new ArrayList<>(sync.getProjects()), projectLinks, bindings);
+            inventory = result;
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine("Project inventory refreshed, " + toRead.size() + " of " + result.getProjects().size() + " projects read");
+            }
+            try {
+                InventorySnapshot.write(result, file);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Fail to write inventory snapshot " + file, e);
+            }
+            return result;
+        }
+    }
+
+    private static void copy(ProjectInventory base, String projectKey, Map<String, List<ProjectLink>> projectLinks, Map<String, ALMSettings> bindings) {
+        if (projectLinks != null) {
+            projectLinks.put(projectKey, base.getLinks().getOrDefault(projectKey, Collections.emptyList()));
+        }
+        ALMSettings settings = base.getALMSettings(projectKey);
+        if (bindings != null && settings != null) {
+            bindings.put(projectKey, settings);
+        }
+    }
+
+    private static class Details {
+        private List<ProjectLink> links;
+        private ALMSettings settings;
+    }
+
+    private Details readDetails(String projectKey) throws ClientException {
+        Details details = new Details();
+        if (links) {
+            details.links = client.getProjectLinks(projectKey);
+        }
+        if (almBindings) {
+            try {
+                details.settings = client.getALMSettings(projectKey);
+            } catch (ClientException e) {
+                // not bound to any ALM
+                if (e.getStatus() != HttpStatus.SC_NOT_FOUND) {
+                    throw e;
+                }
+            }
+        }
+        return details;
+    }
+
+    /**
+     * Starts a refresh in a background thread, unless one is already
+     * running. The thread is a daemon, short lived processes should wait for
+     * the returned future before exiting to have the snapshot updated.
+     *
+     * @return the future refreshed inventory
+     */
+    public synchronized CompletableFuture<ProjectInventory> refreshInBackground() {
+        if (refresh == null || refresh.isDone()) {
+            CompletableFuture<ProjectInventory> future = new CompletableFuture<>();
+            Thread thread = new Thread(() -> {
+                try {
+                    future.complete(refresh());
+                } catch (ClientException | RuntimeException e) {
+                    logger.log(Level.WARNING, "Fail to refresh project inventory", e);
+                    future.completeExceptionally(e);
+                }
+            }, "sonarqube-inventory-refresh");
+            thread.setDaemon(true);
+            refresh = future;
+            thread.start();
+        }
+        return refresh;
+    }
+
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * Sets how long a snapshot is used without contacting the server.
+     *
+     * @param maxAge the maximum age, default one hour
+     */
+    public void setMaxAge(Duration maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    public Duration getMaxStale() {
+        return maxStale;
+    }
+
+    /**
+     * Sets how long after the maximum age a snapshot is still returned while
+     * it is refreshed in background.
+     *
+     * @param maxStale the maximum staleness, default one day, zero to always
+     *        wait for the refresh
+     */
+    public void setMaxStale(Duration maxStale) {
+        this.maxStale = maxStale;
+    }
+
+    public boolean isLinks() {
+        return links;
+    }
+
+    /**
+     * Sets if the inventory includes the links of the projects, one more
+     * request for each project.
+     *
+     * @param links {@code true} to read the project links, default
+     *        {@code true}
+     */
+    public void setLinks(boolean links) {
+        this.links = links;
+    }
+
+    public boolean isALMBindings() {
+        return almBindings;
+    }
+
+    /**
+     * Sets if the inventory includes the ALM bindings of the projects, one
+     * more request for each project that requires the administer permission
+     * on the project.
+     *
+     * @param almBindings {@code true} to read the ALM bindings, default
+     *        {@code true}
+     */
+    public void setALMBindings(boolean almBindings) {
+        this.almBindings = almBindings;
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import com.github.nfalco79.sonarqube.client.model.ALMSettings;
+import com.github.nfalco79.sonarqube.client.model.Project;
+import com.github.nfalco79.sonarqube.client.model.ProjectLink;
+
+/**
+ * Binary file format of a {@link ProjectInventory}.
+ * <p>
+ * All strings are stored once in a table and referenced by index, so the
+ * values repeated for each project like qualifier, visibility, link types
+ * and ALM settings cost a few bytes. Numbers are written as variable length
+ * integers. The file starts with a magic number and a format version and
+ * ends with a CRC32 of its content; a file of another version, truncated or
+ * corrupted is refused.
+ *
+ * <pre>
+ * magic version created detailsRead serverURL flags
+ * strings: count (length utf8)*
+ * projects: count (key name qualifier visibility lastAnalysisDate revision
+ *                  [links: count (id type url)*]
+ *                  [binding: present (key alm repository monorepo)])*
+ * crc32
+ * </pre>
+ *
+ * @author Nikolas Falco
+ */
+public final class InventorySnapshot {
+
+    private static final int MAGIC = 0x53514956; // SQIV
+    /* package */ static final int VERSION = 2;
+    private static final int FLAG_LINKS = 1;
+    private static final int FLAG_BINDINGS = 2;
+
+    private InventorySnapshot() {
+    }
+
+    /**
+     * Writes the inventory to the given file. The file is replaced
+     * atomically, readers see either the previous content or the new one.
+     *
+     * @param inventory to write
+     * @param file the snapshot file
+     * @throws IOException if the file could not be written
+     */
+    public static void write(ProjectInventory inventory, Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream os = Files.newOutputStream(temp)) {
+                write(inventory, os);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /* package */ static void write(ProjectInventory inventory, OutputStream os) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        index(strings, inventory.getServerURL());
+        for (Project project : inventory.getProjects()) {
+            index(strings, project.getKey());
+            index(strings, project.getName());
+            index(strings, project.getQualifier());
+            index(strings, project.getVisibility());
+            index(strings, project.getRevision());
+            for (ProjectLink link : inventory.getLinks(project.getKey())) {
+                index(strings, link.getId());
+                index(strings, link.getType());
+                index(strings, link.getUrl());
+            }
+            ALMSettings settings = inventory.getALMSettings(project.getKey());
+            if (settings != null) {
+                index(strings, settings.getKey());
+                index(strings, settings.getAlm());
+                index(strings, settings.getRepository());
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(os, 64 * 1024), crc));
+        out.writeInt(MAGIC);
+        writeVarLong(out, VERSION);
+        writeVarLong(out, inventory.getCreated().toEpochMilli());
+        writeVarLong(out, inventory.getDetailsRead().toEpochMilli());
+        writeVarLong(out, (inventory.hasLinks() ? FLAG_LINKS : 0) | (inventory.hasALMBindings() ? FLAG_BINDINGS : 0));
+        writeVarLong(out, strings.size());
+        for (String value : strings.keySet()) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(out, bytes.length);
+            out.write(bytes);
+        }
+        writeString(out, strings, inventory.getServerURL());
+
+        writeVarLong(out, inventory.getProjects().size());
+        for (Project project : inventory.getProjects()) {
+            writeString(out, strings, project.getKey());
+            writeString(out, strings, project.getName());
+            writeString(out, strings, project.getQualifier());
+            writeString(out, strings, project.getVisibility());
+            Date analysis = project.getLastAnalysisDate();
+            writeVarLong(out, analysis != null ? analysis.getTime() + 1 : 0);
+            writeString(out, strings, project.getRevision());
+            if (inventory.hasLinks()) {
+                List<ProjectLink> links = inventory.getLinks(project.getKey());
+                writeVarLong(out, links.size());
+                for (ProjectLink link : links) {
+                    writeString(out, strings, link.getId());
+                    writeString(out, strings, link.getType());
+                    writeString(out, strings, link.getUrl());
+                }
+            }
+            if (inventory.hasALMBindings()) {
+                ALMSettings settings = inventory.getALMSettings(project.getKey());
+                out.writeBoolean(settings != null);
+                if (settings != null) {
+                    writeString(out, strings, settings.getKey());
+                    writeString(out, strings, settings.getAlm());
+                    writeString(out, strings, settings.getRepository());
+                    out.writeBoolean(settings.isMonorepo());
+                }
+            }
+        }
+        out.flush();
+        // the checksum itself is not part of the checked content
+        new DataOutputStream(os).writeInt((int) crc.getValue());
+        os.flush();
+    }
+
+    private static void index(Map<String, Integer> strings, String value) {
+        if (value != null) {
+            strings.putIfAbsent(value, strings.size());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, Map<String, Integer> strings, String value) throws IOException {
+        // zero is reserved to null
+        writeVarLong(out, value != null ? strings.get(value) + 1 : 0);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Reads an inventory from the given file, the file is memory mapped.
+     *
+     * @param file the snapshot file
+     * @return the inventory
+     * @throws IOException if the file could not be read or is not a valid
+     *         snapshot of the supported version
+     */
+    public static ProjectInventory read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + file + " too large");
+            }
+            return read(channel.map(MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /* package */ static ProjectInventory read(ByteBuffer buffer) throws IOException {
+        try {
+            int size = buffer.remaining();
+            if (size < 8 || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not an inventory snapshot");
+            }
+            ByteBuffer content = buffer.duplicate();
+            // cast to Buffer, ByteBuffer.limit(int) does not exist on Java 8
+            ((Buffer) content).limit(size - 4);
+            CRC32 crc = new CRC32();
+            crc.update(content.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(size - 4)) {
+                throw new IOException("Inventory snapshot is corrupted");
+            }
+
+            content.getInt();
+            long version = readVarLong(content);
+            if (version != VERSION) {
+                throw new IOException("Unsupported inventory snapshot version " + version);
+            }
+            Instant created = Instant.ofEpochMilli(readVarLong(content));
+            Instant detailsRead = Instant.ofEpochMilli(readVarLong(content));
+            int flags = (int) readVarLong(content);
+            String[] strings = new String[readCount(content)];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[readCount(content)];
+                content.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            String serverURL = readString(content, strings);
+
+            int count = readCount(content);
+            List<Project> projects = new ArrayList<>(count);
+            Map<String, List<ProjectLink>> links = (flags & FLAG_LINKS) != 0 ? new HashMap<>(count * 4 / 3 + 1) : null;
+            Map<String, ALMSettings> bindings = (flags & FLAG_BINDINGS) != 0 ? new HashMap<>(count * 4 / 3 + 1) : null;
+            for (int i = 0; i < count; i++) {
+                Project project = new Project();
+                project.setKey(readString(content, strings));
+                project.setName(readString(content, strings));
+                project.setQualifier(readString(content, strings));
+                project.setVisibility(readString(content, strings));
+                long analysis = readVarLong(content);
+                project.setLastAnalysisDate(analysis != 0 ? new Date(analysis - 1) : null);
+                project.setRevision(readString(content, strings));
+                projects.add(project);
+                if (links != null) {
+                    int linkCount = readCount(content);
+                    List<ProjectLink> projectLinks = new ArrayList<>(linkCount);
+                    for (int l = 0; l < linkCount; l++) {
+                        ProjectLink link = new ProjectLink();
+                        link.setId(readString(content, strings));
+                        link.setType(readString(content, strings));
+                        link.setUrl(readString(content, strings));
+                        projectLinks.add(link);
+                    }
+                    links.put(project.getKey(), projectLinks);
+                }
+                if (bindings != null && content.get() != 0) {
+                    ALMSettings settings = new ALMSettings();
+                    settings.setKey(readString(content, strings));
+                    settings.setAlm(readString(content, strings));
+                    settings.setRepository(readString(content, strings));
+                    settings.setMonorepo(content.get() != 0);
+                    bindings.put(project.getKey(), settings);
+                }
+            }
+            if (content.hasRemaining()) {
+                throw new IOException("Unexpected data at the end of the inventory snapshot");
+            }
+            return new ProjectInventory(serverURL, created, detailsRead, projects, links, bindings);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Inventory snapshot is truncated", e);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer, String[] strings) {
+        int index = (int) readVarLong(buffer);
+        return index != 0 ? strings[index - 1] : null;
+    }
+
+    private static int readCount(ByteBuffer buffer) throws IOException {
+        long count = readVarLong(buffer);
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IOException("Invalid length " + count + " in inventory snapshot");
+        }
+        return (int) count;
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
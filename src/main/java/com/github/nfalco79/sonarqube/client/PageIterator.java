@@ -0,0 +1,121 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import com.github.nfalco79.sonarqube.client.internal.rest.PaginatedResponse;
+import com.github.nfalco79.sonarqube.client.internal.rest.PaginatedResponse.Paging;
+
+/**
+ * Iterates over the components of a paginated resource keeping in memory
+ * only the page being consumed.
+ * <p>
+ * As soon as a page is received the next one is requested in background, so
+ * the network I/O overlaps with the processing of the caller.
+ * <p>
+ * Errors are reported as {@link UncheckedIOException} wrapping the
+ * {@link ClientException}.
+ *
+ * @author Nikolas Falco
+ * @param <T> the component type
+ */
+/* package */ class PageIterator<T> implements CloseableIterator<T> {
+
+    /**
+     * Builds the request of a page.
+     *
+     * @param <T> the component type
+     */
+    @FunctionalInterface
+    interface PageRequest<T> {
+        Callable<PaginatedResponse<T>> page(int pageIndex, int pageSize);
+    }
+
+    private final PageRequest<T> nextPage;
+    private final Executor executor;
+    private FutureTask<PaginatedResponse<T>> pending;
+    private Iterator<T> current = Collections.emptyIterator();
+
+    /**
+     * Default constructor.
+     *
+     * @param firstPage the request of the first page, executed in the caller
+     *        thread at the first access
+     * @param nextPage builds the request of the following pages
+     * @param executor where the following pages are requested
+     */
+    PageIterator(Callable<PaginatedResponse<T>> firstPage, PageRequest<T> nextPage, Executor executor) {
+        this.nextPage = nextPage;
+        this.executor = executor;
+        this.pending = new FutureTask<>(firstPage);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (pending == null) {
+                return false;
+            }
+            PaginatedResponse<T> response = take();
+            Paging page = response.getPaging();
+            if (page != null && page.getPageSize() * page.getPageIndex() < page.getTotal()) {
+                pending = new FutureTask<>(nextPage.page(page.getPageIndex() + 1, page.getPageSize()));
+                executor.execute(pending);
+            }
+            current = response.getComponents().iterator();
+        }
+        return true;
+    }
+
+    private PaginatedResponse<T> take() {
+        FutureTask<PaginatedResponse<T>> task = pending;
+        pending = null;
+        try {
+            task.run();
+            return SonarqubeServerClient.await(task);
+        } catch (ClientException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    /**
+     * Cancels the read-ahead request of the next page, if any.
+     */
+    @Override
+    public void close() {
+        if (pending != null) {
+            pending.cancel(true);
+            pending = null;
+        }
+        current = Collections.emptyIterator();
+    }
+
+}
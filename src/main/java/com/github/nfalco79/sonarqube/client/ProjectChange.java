@@ -0,0 +1,77 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import com.github.nfalco79.sonarqube.client.model.Project;
+
+/**
+ * A project added, changed or removed since the previous synchronisation.
+ *
+ * @author Nikolas Falco
+ * @see ProjectSync
+ */
+public class ProjectChange {
+
+    public enum Type {
+        ADDED, CHANGED, REMOVED
+    }
+
+    private final Type type;
+    private final Project previous;
+    private final Project current;
+
+    /* package */ ProjectChange(Type type, Project previous, Project current) {
+        this.type = type;
+        this.previous = previous;
+        this.current = current;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * The project as known before the synchronisation.
+     *
+     * @return the previous project, {@code null} if added
+     */
+    public Project getPrevious() {
+        return previous;
+    }
+
+    /**
+     * The project as returned by the server.
+     *
+     * @return the current project, {@code null} if removed
+     */
+    public Project getCurrent() {
+        return current;
+    }
+
+    /**
+     * The key of the changed project.
+     *
+     * @return the project key
+     */
+    public String getKey() {
+        return current != null ? current.getKey() : previous.getKey();
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + getKey();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.github.nfalco79.sonarqube.client.model.ALMSettings;
+import com.github.nfalco79.sonarqube.client.model.Project;
+import com.github.nfalco79.sonarqube.client.model.ProjectLink;
+
+/**
+ * The projects of a Sonarqube server with their links and ALM bindings, as
+ * read at a given time.
+ *
+ * @author Nikolas Falco
+ * @see InventoryLoader
+ */
+public class ProjectInventory {
+
+    private final String serverURL;
+    private final Instant created;
+    private final Instant detailsRead;
+    private final List<Project> projects;
+    private final Map<String, List<ProjectLink>> links;
+    private final Map<String, ALMSettings> bindings;
+
+    /* package */ ProjectInventory(String serverURL, Instant created, List<Project> projects, Map<String, List<ProjectLink>> links, Map<String, ALMSettings> bindings) {
+        this(serverURL, created, created, projects, links, bindings);
+    }
+
+    /* package */ ProjectInventory(String serverURL, Instant created, Instant detailsRead, List<Project> projects, Map<String, List<ProjectLink>> links, Map<String, ALMSettings> bindings) {
+        this.serverURL = serverURL;
+        this.created = created;
+        this.detailsRead = detailsRead;
+        this.projects = Collections.unmodifiableList(projects);
+        this.links = links;
+        this.bindings = bindings;
+    }
+
+    /**
+     * The server the projects have been read from.
+     *
+     * @return the server URL
+     */
+    public String getServerURL() {
+        return serverURL;
+    }
+
+    /**
+     * When the inventory has been last read from the server.
+     *
+     * @return the creation time
+     */
+    public Instant getCreated() {
+        return created;
+    }
+
+    /**
+     * When the links and ALM bindings of all projects have been last read
+     * from the server, in between they are read only for the projects added
+     * or analysed.
+     *
+     * @return the time of the last full read of the project details
+     */
+    public Instant getDetailsRead() {
+        return detailsRead;
+    }
+
+    public List<Project> getProjects() {
+        return projects;
+    }
+
+    /**
+     * Whether the links of the projects have been read.
+     *
+     * @return {@code true} if the inventory contains the project links
+     */
+    public boolean hasLinks() {
+        return links != null;
+    }
+
+    /**
+     * Returns the links of the given project.
+     *
+     * @param projectKey the project key
+     * @return the project links, empty if unknown
+     */
+    public List<ProjectLink> getLinks(String projectKey) {
+        List<ProjectLink> result = links != null ? links.get(projectKey) : null;
+        return result != null ? Collections.unmodifiableList(result) : Collections.emptyList();
+    }
+
+    /**
+     * Whether the ALM bindings of the projects have been read.
+     *
+     * @return {@code true} if the inventory contains the ALM bindings
+     */
+    public boolean hasALMBindings() {
+        return bindings != null;
+    }
+
+    /**
+     * Returns the ALM settings of the given project.
+     *
+     * @param projectKey the project key
+     * @return the ALM settings, {@code null} if the project is not bound
+     */
+    public ALMSettings getALMSettings(String projectKey) {
+        return bindings != null ? bindings.get(projectKey) : null;
+    }
+
+    /* package */ Map<String, List<ProjectLink>> getLinks() {
+        return links;
+    }
+
+    /* package */ Map<String, ALMSettings> getALMBindings() {
+        return bindings;
+    }
+}
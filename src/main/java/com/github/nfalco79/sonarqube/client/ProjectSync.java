@@ -0,0 +1,188 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TimeZone;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.github.nfalco79.sonarqube.client.ProjectChange.Type;
+import com.github.nfalco79.sonarqube.client.model.Project;
+
+/**
+ * Keeps a local copy of the projects of a Sonarqube server up to date.
+ * <p>
+ * The Web API can not list the projects analysed after a given date, only
+ * those analysed before it. The most recent analysis date known locally is
+ * used as high-water mark: the server is asked how many projects exist, how
+ * many have been analysed before the mark and how many have never been
+ * analysed. A project analysed since the previous synchronisation, added or
+ * removed changes at least one of these counts, only in that case the
+ * projects are read again and compared with the local copy. Changes that
+ * do not involve an analysis, like a rename, or a removal balanced by an
+ * addition of the same kind are detected only by {@link #fullSync(Consumer)}.
+ *
+ * <pre>
+ * ProjectSync sync = new ProjectSync(client, previousProjects);
+ * sync.sync(change -&gt; inventory.update(change));
+ * </pre>
+ *
+ * @author Nikolas Falco
+ */
+public class ProjectSync {
+
+    private final Logger logger = Logger.getLogger(ProjectSync.class.getName());
+
+    private final SonarqubeServerClient client;
+    private Map<String, Project> projects = new LinkedHashMap<>();
+
+    public ProjectSync(SonarqubeServerClient client) {
+        this(client, Collections.emptyList());
+    }
+
+    /**
+     * Creates a synchronisation that starts from the projects read by a
+     * previous run.
+     *
+     * @param client the client of the server
+     * @param projects the projects known locally
+     */
+    public ProjectSync(SonarqubeServerClient client, Collection<Project> projects) {
+        this.client = client;
+        for (Project project : projects) {
+            this.projects.put(project.getKey(), project);
+        }
+    }
+
+    /**
+     * Brings the local copy up to date, the projects are read only if the
+     * server reports any change since the previous synchronisation.
+     *
+     * @param listener notified in the caller thread of each change
+     * @return {@code true} if projects have been read from the server
+     * @throws ClientException in case of HTTP response from server different
+     *         than 20x codes
+     */
+    public synchronized boolean sync(Consumer<? super ProjectChange> listener) throws ClientException {
+        if (!projects.isEmpty() && isUpToDate()) {
+            return false;
+        }
+        fullSync(listener);
+        return true;
+    }
+
+    /*
+     * The analysedBefore filter is exclusive and dates have a precision of
+     * one second, counting the projects analysed before the second after the
+     * high-water mark includes the projects analysed at the mark. A project
+     * analysed again, the most recent one too, leaves that count.
+     */
+    private boolean isUpToDate() throws ClientException {
+        Date highWaterMark = getHighWaterMark();
+        int provisioned = 0;
+        int analysed = 0;
+        for (Project project : projects.values()) {
+            if (project.getLastAnalysisDate() == null) {
+                provisioned++;
+            } else {
+                analysed++;
+            }
+        }
+
+        // stop at the first count that differs
+        boolean upToDate = client.countProjects(null, false) == projects.size() //
+                && (highWaterMark == null || client.countProjects(format(new Date(highWaterMark.getTime() + 1000)), false) == analysed) //
+                && client.countProjects(null, true) == provisioned;
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine((upToDate ? "No" : "Some") + " projects changed since " + highWaterMark);
+        }
+        return upToDate;
+    }
+
+    private static String format(Date date) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ", Locale.ENGLISH);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(date);
+    }
+
+    /**
+     * Reads all projects from the server and compares them with the local
+     * copy. If the synchronisation fails the local copy is left unchanged and
+     * the changes already notified are notified again by the next one.
+     *
+     * @param listener notified in the caller thread of each change
+     * @throws ClientException in case of HTTP response from server different
+     *         than 20x codes
+     */
+    public synchronized void fullSync(Consumer<? super ProjectChange> listener) throws ClientException {
+        Map<String, Project> previous = new HashMap<>(projects);
+        Map<String, Project> current = new LinkedHashMap<>(Math.max(16, previous.size() * 4 / 3));
+        client.forEachProject(null, project -> {
+            current.put(project.getKey(), project);
+            Project known = previous.remove(project.getKey());
+            if (known == null) {
+                listener.accept(new ProjectChange(Type.ADDED, null, project));
+            } else if (isChanged(known, project)) {
+                listener.accept(new ProjectChange(Type.CHANGED, known, project));
+            }
+        });
+        previous.values().forEach(project -> listener.accept(new ProjectChange(Type.REMOVED, project, null)));
+        projects = current;
+    }
+
+    private static boolean isChanged(Project previous, Project current) {
+        return !Objects.equals(previous.getName(), current.getName()) //
+                || !Objects.equals(previous.getVisibility(), current.getVisibility()) //
+                || !Objects.equals(previous.getLastAnalysisDate(), current.getLastAnalysisDate()) //
+                || !Objects.equals(previous.getRevision(), current.getRevision());
+    }
+
+    /**
+     * The projects known locally.
+     *
+     * @return an unmodifiable view of the projects
+     */
+    public synchronized Collection<Project> getProjects() {
+        return Collections.unmodifiableCollection(projects.values());
+    }
+
+    /**
+     * The most recent analysis date of the projects known locally.
+     *
+     * @return the high-water mark, {@code null} if no project has been
+     *         analysed
+     */
+    public synchronized Date getHighWaterMark() {
+        Date highWaterMark = null;
+        for (Project project : projects.values()) {
+            Date analysis = project.getLastAnalysisDate();
+            if (analysis != null && (highWaterMark == null || analysis.after(highWaterMark))) {
+                highWaterMark = analysis;
+            }
+        }
+        return highWaterMark;
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A REST API URI template compiled once and expanded for each request.
+ * <p>
+ * Supports the subset of RFC 6570 used by Sonarqube web APIs, a path
+ * followed by an optional form-style query expansion like
+ * {@code /api/webhooks/list{?project}}. Undefined variables are omitted.
+ * <p>
+ * Instances are immutable and thread safe.
+ *
+ * @author Nikolas Falco
+ */
+/* package */ final class RequestTemplate {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * The values of the variables for a single expansion of a template.
+     */
+    /* package */ static final class Expansion {
+        private final RequestTemplate template;
+        private final Object[] values;
+
+        private Expansion(RequestTemplate template) {
+            this.template = template;
+            this.values = new Object[template.variables.length];
+        }
+
+        /**
+         * Sets the value of a variable, a {@code null} value undefines the
+         * variable.
+         *
+         * @param variable the variable name
+         * @param value the variable value
+         * @return this expansion
+         */
+        public Expansion set(String variable, Object value) {
+            values[template.indexOf(variable)] = value;
+            return this;
+        }
+
+        /**
+         * Expands the template.
+         *
+         * @param baseURL the server URL prepended to the template path
+         * @return the request URI
+         */
+        public String expand(String baseURL) {
+            return template.expand(baseURL, values);
+        }
+    }
+
+    private final String path;
+    private final String[] variables;
+    private final String endpoint;
+
+    private RequestTemplate(String path, String[] variables) {
+        this.path = path;
+        this.variables = variables;
+        this.endpoint = SonarqubeServerClient.endpointName(path);
+    }
+
+    /**
+     * Parses the given template.
+     *
+     * @param template in the form {@code /path{?var1,var2}}
+     * @return the compiled template
+     */
+    public static RequestTemplate compile(String template) {
+        int start = template.indexOf("{?");
+        if (start == -1) {
+            return new RequestTemplate(template, new String[0]);
+        }
+        if (!template.endsWith("}")) {
+            throw new IllegalArgumentException("Unsupported URI template " + template);
+        }
+        String[] variables = template.substring(start + 2, template.length() - 1).split(",");
+        return new RequestTemplate(template.substring(0, start), variables);
+    }
+
+    /**
+     * Starts a new expansion of this template with the given variable.
+     *
+     * @param variable the variable name
+     * @param value the variable value
+     * @return a new expansion
+     */
+    public Expansion set(String variable, Object value) {
+        return new Expansion(this).set(variable, value);
+    }
+
+    /**
+     * Expands the template without variables.
+     *
+     * @param baseURL the server URL prepended to the template path
+     * @return the request URI
+     */
+    public String expand(String baseURL) {
+        return expand(baseURL, null);
+    }
+
+    /**
+     * Returns the path of this template without the query expansion.
+     *
+     * @return the template path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the logical name of the endpoint, for example
+     * {@code webhooks.list}.
+     *
+     * @return the endpoint name
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    private int indexOf(String variable) {
+        for (int i = 0; i < variables.length; i++) {
+            if (variables[i].equals(variable)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Variable " + variable + " not in template " + this);
+    }
+
+    private String expand(String baseURL, Object[] values) {
+        StringBuilder uri = new StringBuilder(baseURL.length() + path.length() + 16 * variables.length);
+        uri.append(baseURL).append(path);
+        if (values != null) {
+            char separator = '?';
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    uri.append(separator).append(variables[i]).append('=');
+                    encode(values[i].toString(), uri);
+                    separator = '&';
+                }
+            }
+        }
+        return uri.toString();
+    }
+
+    /*
+     * Percent encodes all characters except the unreserved set, as required
+     * by the form-style query expansion.
+     */
+    private static void encode(String value, StringBuilder out) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (isUnreserved(c)) {
+                out.append(c);
+            } else if (c < 0x80) {
+                appendEscaped(c, out);
+            } else {
+                int end = i + 1;
+                if (Character.isHighSurrogate(c) && end < value.length()) {
+                    end++;
+                }
+                for (byte b : value.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+                    appendEscaped(b & 0xFF, out);
+                }
+                i = end - 1;
+            }
+        }
+    }
+
+    /**
+     * Returns the length of the given value once encoded in a query.
+     *
+     * @param value the variable value
+     * @return the number of characters of the encoded value
+     */
+    /* package */ static int encodedLength(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (isUnreserved(c)) {
+                length++;
+            } else if (c < 0x80) {
+                length += 3;
+            } else if (c < 0x800) {
+                length += 6;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()) {
+                length += 12;
+                i++;
+            } else {
+                length += 9;
+            }
+        }
+        return length;
+    }
+
+    private static void appendEscaped(int b, StringBuilder out) {
+        out.append('%').append(HEX[b >> 4]).append(HEX[b & 0x0F]);
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') //
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    @Override
+    public String toString() {
+        return variables.length == 0 ? path : path + "{?" + String.join(",", Arrays.asList(variables)) + "}";
+    }
+
+}
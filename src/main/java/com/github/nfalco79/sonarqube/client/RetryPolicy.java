@@ -0,0 +1,148 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.hc.client5.http.utils.DateUtils;
+
+/**
+ * How {@link SonarqubeServerClient} and {@link SonarqubeAsyncClient} retry
+ * failed requests.
+ * <p>
+ * The delay before each retry grows exponentially from
+ * {@link #getInitialDelay()} up to {@link #getMaxDelay()}, and a random
+ * jitter of up to half the delay keeps clients that failed together from
+ * retrying at the same time. A {@code Retry-After} header sent by the
+ * server takes precedence over the computed delay.
+ * <p>
+ * The policy can be changed while requests are in flight, the following
+ * retries use the new settings.
+ *
+ * @author Nikolas Falco
+ */
+public class RetryPolicy {
+
+    private volatile int maxRetries = 3;
+    private volatile Duration initialDelay = Duration.ofMillis(500);
+    private volatile Duration maxDelay = Duration.ofSeconds(30);
+    private volatile double multiplier = 2;
+
+    /**
+     * The maximum number of times a request is sent again.
+     *
+     * @return max retries, 0 disables retries
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries must be positive");
+        }
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * The delay before the first retry.
+     *
+     * @return the first delay
+     */
+    public Duration getInitialDelay() {
+        return initialDelay;
+    }
+
+    public void setInitialDelay(Duration initialDelay) {
+        this.initialDelay = initialDelay;
+    }
+
+    /**
+     * The longest delay between two attempts. A request is not retried if
+     * the server asks to wait longer than this.
+     *
+     * @return the delay cap
+     */
+    public Duration getMaxDelay() {
+        return maxDelay;
+    }
+
+    public void setMaxDelay(Duration maxDelay) {
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * The factor applied to the delay after each retry.
+     *
+     * @return the backoff multiplier
+     */
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public void setMultiplier(double multiplier) {
+        if (multiplier < 1) {
+            throw new IllegalArgumentException("multiplier must be greater or equals than 1");
+        }
+        this.multiplier = multiplier;
+    }
+
+    /**
+     * Returns how long to wait before the given retry.
+     *
+     * @param retry the retry number, starting from 1
+     * @param retryAfter the delay requested by the server, may be
+     *        {@code null}
+     * @return the delay or {@code null} if the request must not be retried
+     */
+    public Duration getDelay(int retry, Duration retryAfter) {
+        if (retry > maxRetries) {
+            return null;
+        }
+        if (retryAfter != null) {
+            return retryAfter.compareTo(maxDelay) <= 0 ? retryAfter : null;
+        }
+        double backoff = initialDelay.toNanos() * Math.pow(multiplier, retry - 1.0);
+        long cap = (long) Math.min(backoff, maxDelay.toNanos());
+        long half = cap / 2;
+        return Duration.ofNanos(half + ThreadLocalRandom.current().nextLong(half + 1));
+    }
+
+    /**
+     * Parses the value of a {@code Retry-After} header.
+     *
+     * @param value delay in seconds or an HTTP date
+     * @return the delay to wait or {@code null} if the value is not valid
+     */
+    public static Duration parseRetryAfter(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            long seconds = Long.parseLong(value.trim());
+            return seconds >= 0 ? Duration.ofSeconds(seconds) : null;
+        } catch (NumberFormatException e) {
+            Instant date = DateUtils.parseStandardDate(value);
+            if (date == null) {
+                return null;
+            }
+            Duration delay = Duration.between(Instant.now(), date);
+            return delay.isNegative() ? Duration.ZERO : delay;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.message.BasicHeader;
+
+/**
+ * The cookies of a web session opened by a login.
+ * <p>
+ * Requests authenticated by the session cookie let the server skip the
+ * password hash check done for Basic authentication. Requests other than GET
+ * must also carry the XSRF token in a header.
+ *
+ * @author Nikolas Falco
+ */
+/* package */ class Session {
+
+    /**
+     * A login request that collects the cookies of the new session.
+     */
+    /* package */ static class Login extends HttpPost {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Session session = new Session();
+
+        Login(String uri) {
+            super(uri);
+        }
+
+        public Session getSession() {
+            return session;
+        }
+    }
+
+    /* package */ static final String JWT_SESSION = "JWT-SESSION";
+    /* package */ static final String XSRF_TOKEN = "XSRF-TOKEN";
+    /* package */ static final String XSRF_HEADER = "X-XSRF-TOKEN";
+
+    private static final String SET_COOKIE = "Set-Cookie";
+
+    private final Map<String, String> cookies = new ConcurrentHashMap<>();
+    // rebuilt only when the server sets a cookie
+    private volatile Header cookie;
+
+    /**
+     * Stores the cookies set by the response, the server renews the session
+     * cookie from time to time and removes it with an expired one.
+     *
+     * @param response the server response
+     */
+    public void update(HttpResponse response) {
+        Header[] headers = response.getHeaders(SET_COOKIE);
+        if (headers.length == 0) {
+            return;
+        }
+        synchronized (cookies) {
+            for (Header header : headers) {
+                String value = header.getValue();
+                int end = value.indexOf(';');
+                String pair = end == -1 ? value : value.substring(0, end);
+                int eq = pair.indexOf('=');
+                if (eq <= 0) {
+                    continue;
+                }
+                String name = pair.substring(0, eq).trim();
+                String cookieValue = pair.substring(eq + 1).trim();
+                if (cookieValue.isEmpty() || isExpired(value.substring(pair.length()))) {
+                    cookies.remove(name);
+                } else {
+                    cookies.put(name, cookieValue);
+                }
+            }
+            StringBuilder sb = new StringBuilder();
+            cookies.forEach((name, value) -> sb.append(sb.length() == 0 ? "" : "; ").append(name).append('=').append(value));
+            cookie = sb.length() == 0 ? null : new BasicHeader(HttpHeaders.COOKIE, sb.toString());
+        }
+    }
+
+    private static boolean isExpired(String attributes) {
+        for (String attribute : attributes.split(";")) {
+            String[] pair = attribute.trim().split("=", 2);
+            if (pair.length == 2 && "Max-Age".equalsIgnoreCase(pair[0].trim())) {
+                try {
+                    return Long.parseLong(pair[1].trim()) <= 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns if the server has opened a session.
+     *
+     * @return {@code true} if there is a session cookie, {@code false}
+     *         otherwise
+     */
+    public boolean isOpen() {
+        return cookies.containsKey(JWT_SESSION);
+    }
+
+    /**
+     * Setups the request with the session cookies in place of the
+     * credentials.
+     *
+     * @param request the request to authenticate
+     */
+    public void apply(HttpRequest request) {
+        request.removeHeaders(HttpHeaders.AUTHORIZATION);
+        Header header = cookie;
+        if (header != null) {
+            request.setHeader(header);
+        }
+        String xsrf = cookies.get(XSRF_TOKEN);
+        if (xsrf != null && !"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+            request.setHeader(XSRF_HEADER, xsrf);
+        }
+    }
+}
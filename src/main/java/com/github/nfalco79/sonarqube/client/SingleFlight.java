@@ -0,0 +1,171 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.hc.core5.concurrent.Cancellable;
+
+/**
+ * Coalesces concurrent identical calls so that only one of them reaches
+ * the server, the other callers wait for it and get the same result or
+ * exception.
+ * <p>
+ * Each caller waits within its own {@link Deadline}. A call that fails
+ * because of the deadline, the cancellation or the interruption of the
+ * caller that made it is not shared, the waiting callers make the call
+ * again.
+ *
+ * @author Nikolas Falco
+ */
+/* package */ class SingleFlight {
+
+    @FunctionalInterface
+    interface Loader<T> {
+        T load() throws ClientException;
+    }
+
+    // outcome of a call abandoned by its caller
+    private static final Object ABANDONED = new Object();
+
+    private final ConcurrentMap<Object, CompletableFuture<Object>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the loader unless a call with the same key is already in
+     * progress, in which case waits for its outcome.
+     *
+     * @param key identifies the call
+     * @param loader performs the call
+     * @param <T> the result type
+     * @return the value returned by the loader
+     * @throws ClientException the exception thrown by the loader
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(Object key, Loader<T> loader) throws ClientException {
+        for (;;) {
+            CompletableFuture<Object> call = new CompletableFuture<>();
+            CompletableFuture<Object> inFlight = calls.putIfAbsent(key, call);
+            if (inFlight == null) {
+                return load(key, call, loader);
+            }
+            Object value = await(inFlight, Deadline.current());
+            if (value != ABANDONED) {
+                return (T) value;
+            }
+        }
+    }
+
+    private <T> T load(Object key, CompletableFuture<Object> call, Loader<T> loader) throws ClientException {
+        try {
+            T value = loader.load();
+            call.complete(value);
+            return value;
+        } catch (ClientException e) {
+            if (isAbandoned(e)) {
+                call.complete(ABANDONED);
+            } else {
+                call.completeExceptionally(e);
+            }
+            throw e;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, call);
+        }
+    }
+
+    /*
+     * Failures that depend on the caller and not on the server.
+     */
+    private static boolean isAbandoned(ClientException e) {
+        Throwable cause = e.getCause();
+        return e.getStatus() == 0 && (cause instanceof TimeoutException //
+                || cause instanceof CancellationException //
+                || cause instanceof InterruptedException);
+    }
+
+    private static Object await(CompletableFuture<Object> call, Deadline deadline) throws ClientException {
+        if (deadline == null) {
+            return await(call);
+        }
+        // wakes up also when the deadline is cancelled
+        CompletableFuture<Object> waiter = new CompletableFuture<>();
+        call.whenComplete((value, error) -> {
+            if (error != null) {
+                waiter.completeExceptionally(error);
+            } else {
+                waiter.complete(value);
+            }
+        });
+        Cancellable wakeUp = () -> waiter.complete(ABANDONED);
+        deadline.register(wakeUp);
+        try {
+            Duration remaining = deadline.getRemaining();
+            Object value = remaining != null ? waiter.get(remaining.toNanos(), TimeUnit.NANOSECONDS) : waiter.get();
+            deadline.check();
+            return value;
+        } catch (TimeoutException e) {
+            deadline.check();
+            // the deadline expires as the timer runs
+            return ABANDONED;
+        } catch (InterruptedException | ExecutionException e) {
+            return rethrow(e);
+        } finally {
+            deadline.unregister(wakeUp);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> call) throws ClientException {
+        try {
+            return call.get();
+        } catch (InterruptedException | ExecutionException e) {
+            return rethrow(e);
+        }
+    }
+
+    private static Object rethrow(Exception error) throws ClientException {
+        if (error instanceof InterruptedException) {
+            Thread.currentThread().interrupt();
+            throw new ClientException("Interrupted while waiting for response", error);
+        }
+        Throwable cause = error.getCause();
+        if (cause instanceof ClientException) {
+            throw (ClientException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new ClientException("Client fails to process request", cause);
+    }
+
+    /**
+     * The number of calls in progress.
+     *
+     * @return the in flight calls
+     */
+    public int size() {
+        return calls.size();
+    }
+}
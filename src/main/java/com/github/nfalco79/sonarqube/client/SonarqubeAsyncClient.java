@@ -0,0 +1,574 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import static com.github.nfalco79.sonarqube.client.SonarqubeServerClient.ACCEPT_JSON;
+import static com.github.nfalco79.sonarqube.client.SonarqubeServerClient.ALM_SETTINGS;
+import static com.github.nfalco79.sonarqube.client.SonarqubeServerClient.ALM_SETTINGS_BB;
+import static com.github.nfalco79.sonarqube.client.SonarqubeServerClient.AUTHENTICATION_LOGIN;
+import static com.github.nfalco79.sonarqube.client.SonarqubeServerClient.AUTHENTICATION_VALIDATE;
+import static com.github.nfalco79.sonarqube.client.SonarqubeServerClient.DEFAULT_PAGE_LEN;
+import static com.github.nfalco79.sonarqube.client.SonarqubeServerClient.PROJECTS_SEARCH;
+import static com.github.nfalco79.sonarqube.client.SonarqubeServerClient.PROJECT_LINKS;
+import static com.github.nfalco79.sonarqube.client.SonarqubeServerClient.QUERY_PARAM_ALM_KEY;
+import static com.github.nfalco79.sonarqube.client.SonarqubeServerClient.QUERY_PARAM_PAGE;
+import static com.github.nfalco79.sonarqube.client.SonarqubeServerClient.QUERY_PARAM_PAGESIZE;
+import static com.github.nfalco79.sonarqube.client.SonarqubeServerClient.QUERY_PARAM_PRJ;
+import static com.github.nfalco79.sonarqube.client.SonarqubeServerClient.QUERY_PARAM_PRJS;
+import static com.github.nfalco79.sonarqube.client.SonarqubeServerClient.QUERY_PARAM_PRJ_KEY;
+import static com.github.nfalco79.sonarqube.client.SonarqubeServerClient.QUERY_PARAM_QUERY;
+import static com.github.nfalco79.sonarqube.client.SonarqubeServerClient.QUERY_PARAM_REPO_KEY;
+import static com.github.nfalco79.sonarqube.client.SonarqubeServerClient.QUERY_PARAM_SECRET;
+import static com.github.nfalco79.sonarqube.client.SonarqubeServerClient.QUERY_PARAM_WEBHOOK_KEY;
+import static com.github.nfalco79.sonarqube.client.SonarqubeServerClient.QUERY_PARAM_WEBHOOK_NAME;
+import static com.github.nfalco79.sonarqube.client.SonarqubeServerClient.QUERY_PARAM_WEBHOOK_URL;
+import static com.github.nfalco79.sonarqube.client.SonarqubeServerClient.WEBHOOK_CREATE;
+import static com.github.nfalco79.sonarqube.client.SonarqubeServerClient.WEBHOOK_DELETE;
+import static com.github.nfalco79.sonarqube.client.SonarqubeServerClient.WEBHOOK_GET;
+import static com.github.nfalco79.sonarqube.client.SonarqubeServerClient.endpointName;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.io.CloseMode;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.nfalco79.sonarqube.client.Credentials.UserPassword;
+import com.github.nfalco79.sonarqube.client.RequestTemplate.Expansion;
+import com.github.nfalco79.sonarqube.client.internal.rest.PaginatedResponse;
+import com.github.nfalco79.sonarqube.client.internal.rest.PaginatedResponse.Paging;
+import com.github.nfalco79.sonarqube.client.internal.rest.ProjectLinks;
+import com.github.nfalco79.sonarqube.client.internal.rest.ProjectSearchResponse;
+import com.github.nfalco79.sonarqube.client.internal.rest.WebhookResponse;
+import com.github.nfalco79.sonarqube.client.model.ALMSettings;
+import com.github.nfalco79.sonarqube.client.model.Authentication;
+import com.github.nfalco79.sonarqube.client.model.Project;
+import com.github.nfalco79.sonarqube.client.model.ProjectLink;
+import com.github.nfalco79.sonarqube.client.model.Webhook;
+
+/**
+ * Non blocking client of Sonarqube.
+ * <p>
+ * Offers the same operations of {@link SonarqubeServerClient} but each
+ * method returns immediately a {@link CompletableFuture}. All requests are
+ * multiplexed over a single I/O reactor so that many requests can be in
+ * flight without holding a thread for each one of them.
+ * <p>
+ * Futures complete exceptionally with a {@link ClientException} in case of
+ * HTTP response from server different than 20x codes. Failed requests are
+ * retried by the same {@link RetryPolicy} rules of the blocking client,
+ * waiting without holding any thread. Cancelling a future aborts the HTTP
+ * requests it is waiting for.
+ *
+ * @author Nikolas Falco
+ */
+public class SonarqubeAsyncClient implements Closeable {
+
+    // created at the first retry
+    private static class RetryTimer {
+        private static final ScheduledThreadPoolExecutor INSTANCE = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "sonarqube-async-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        static {
+            INSTANCE.setRemoveOnCancelPolicy(true);
+        }
+    }
+
+    private static final int DEFAULT_MAX_CONNECTIONS = 200;
+
+    private final Logger logger = Logger.getLogger(SonarqubeAsyncClient.class.getName());
+
+    protected ObjectMapper objectMapper;
+    private final Credentials credentials;
+    private final String serverURL;
+    private final int maxConnections;
+    private volatile RetryPolicy retryPolicy = new RetryPolicy();
+    private volatile boolean dryRun;
+    private CloseableHttpAsyncClient client;
+
+    /**
+     * Async client constructor which requires server info.
+     *
+     * @param serverURL sonarqube URL
+     * @param credentials the object containing the server info
+     */
+    public SonarqubeAsyncClient(String serverURL, Credentials credentials) {
+        this(serverURL, credentials, DEFAULT_MAX_CONNECTIONS);
+    }
+
+    /**
+     * Async client constructor which requires server info.
+     *
+     * @param serverURL sonarqube URL
+     * @param credentials the object containing the server info
+     * @param maxConnections the maximum number of connections opened to the
+     *        server, further requests wait in queue for a free connection
+     */
+    public SonarqubeAsyncClient(String serverURL, Credentials credentials, int maxConnections) {
+        this.serverURL = serverURL;
+        this.credentials = credentials;
+        this.maxConnections = maxConnections;
+        buildJSONConverter();
+        buildClient();
+    }
+
+    private <T> CompletableFuture<List<T>> getPaginated(Expansion template, Class<? extends PaginatedResponse<T>> type) {
+        String uri = template.set(QUERY_PARAM_PAGESIZE, DEFAULT_PAGE_LEN).expand(serverURL);
+        CompletableFuture<List<T>> result = new CompletableFuture<>();
+        Queue<Future<?>> calls = new ConcurrentLinkedQueue<>();
+        CompletableFuture<PaginatedResponse<T>> firstPage = process(SimpleRequestBuilder.get(uri).build(), type);
+        calls.add(firstPage);
+        firstPage.thenCompose(response -> {
+            Paging page = response.getPaging();
+            int pageSize = page.getPageSize();
+            int lastPage = pageSize > 0 ? (page.getTotal() + pageSize - 1) / pageSize : page.getPageIndex();
+
+            List<CompletableFuture<PaginatedResponse<T>>> pages = new ArrayList<>();
+            pages.add(CompletableFuture.completedFuture(response));
+            for (int pageIndex = page.getPageIndex() + 1; pageIndex <= lastPage; pageIndex++) {
+                String pageURI = template.set(QUERY_PARAM_PAGE, pageIndex) //
+                        .set(QUERY_PARAM_PAGESIZE, pageSize) //
+                        .expand(serverURL);
+                CompletableFuture<PaginatedResponse<T>> nextPage = process(SimpleRequestBuilder.get(pageURI).build(), type);
+                calls.add(nextPage);
+                pages.add(nextPage);
+                // the first failed page fails the list at once, the other pages are cancelled
+                nextPage.whenComplete((p, e) -> {
+                    if (e != null) {
+                        fail(result, e);
+                    }
+                });
+            }
+            if (result.isCancelled()) {
+                // cancelled while the first page was processed
+                pages.forEach(p -> p.cancel(true));
+            }
+
+            return CompletableFuture.allOf(pages.toArray(new CompletableFuture<?>[pages.size()])).thenApply(done -> {
+                List<T> components = new ArrayList<T>(Math.max(page.getTotal(), response.getComponents().size()));
+                pages.forEach(p -> components.addAll(p.join().getComponents()));
+                return components;
+            });
+        }).whenComplete((components, e) -> {
+            if (e == null) {
+                result.complete(components);
+            } else {
+                fail(result, e);
+            }
+        });
+        return cancelling(result, calls);
+    }
+
+    private static void fail(CompletableFuture<?> result, Throwable e) {
+        result.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+    }
+
+    /**
+     * Propagates the cancellation or the failure of a future derived from
+     * HTTP calls to the calls themselves so that the HTTP exchanges still in
+     * flight are aborted.
+     *
+     * @param future the future returned to the caller
+     * @param calls the futures of the HTTP calls
+     * @return the given future
+     */
+    private static <T> CompletableFuture<T> cancelling(CompletableFuture<T> future, Iterable<? extends Future<?>> calls) {
+        future.whenComplete((value, e) -> {
+            if (e != null) {
+                calls.forEach(call -> call.cancel(true));
+            }
+        });
+        return future;
+    }
+
+    private static <T> CompletableFuture<T> cancelling(CompletableFuture<T> future, Future<?> call) {
+        return cancelling(future, Collections.singleton(call));
+    }
+
+    protected <T> CompletableFuture<T> process(SimpleHttpRequest request, Object type) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicReference<Future<?>> call = new AtomicReference<>();
+        // propagates the cancellation to the HTTP exchange or to the retry waiting
+        result.whenComplete((value, e) -> {
+            Future<?> current = call.get();
+            if (result.isCancelled() && current != null) {
+                current.cancel(true);
+            }
+        });
+        send(request, type, result, call, 1);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void send(SimpleHttpRequest request, Object type, CompletableFuture<T> result, AtomicReference<Future<?>> call, int retry) {
+        if (result.isDone()) {
+            // cancelled while waiting to retry
+            return;
+        }
+        setupRequest(request);
+        call.set(client.execute(request, new FutureCallback<SimpleHttpResponse>() {
+            @Override
+            public void completed(SimpleHttpResponse response) {
+                int code = response.getCode();
+                if (code == HttpStatus.SC_NO_CONTENT) {
+                    result.complete(null);
+                } else if (code >= HttpStatus.SC_OK && code < 300) {
+                    try {
+                        if (type instanceof Class) {
+                            result.complete(objectMapper.readValue(response.getBodyBytes(), (Class<T>) type));
+                        } else if (type instanceof TypeReference) {
+                            result.complete(objectMapper.readValue(response.getBodyBytes(), (TypeReference<T>) type));
+                        } else {
+                            result.complete(null);
+                        }
+                    } catch (IOException e) {
+                        result.completeExceptionally(new ClientException("Fail to deserialize response.", e));
+                    }
+                } else {
+                    Header retryAfter = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+                    retry(new ClientException(code, response.getBodyText(), retryAfter != null ? RetryPolicy.parseRetryAfter(retryAfter.getValue()) : null));
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                retry(new ClientException("Client fails on URL " + request.getRequestUri(), e));
+            }
+
+            @Override
+            public void cancelled() {
+                result.cancel(false);
+            }
+
+            private void retry(ClientException e) {
+                String endpoint = endpointName(request.getPath());
+                Duration delay = SonarqubeServerClient.isRetriable(endpoint, request.getMethod(), e) ? retryPolicy.getDelay(retry, e.getRetryAfter()) : null;
+                if (delay == null) {
+                    result.completeExceptionally(e);
+                    return;
+                }
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.log(Level.FINE, "Retry " + retry + " of " + request.getRequestUri() + " in " + delay.toMillis() + "ms", e);
+                }
+                call.set(RetryTimer.INSTANCE.schedule(() -> send(request, type, result, call, retry + 1), delay.toNanos(), TimeUnit.NANOSECONDS));
+                if (result.isCancelled()) {
+                    call.get().cancel(false);
+                }
+            }
+        }));
+        if (result.isCancelled()) {
+            // cancelled while the request was sent
+            call.get().cancel(true);
+        }
+    }
+
+    private <T> CompletableFuture<T> process(SimpleHttpRequest request) {
+        return process(request, null);
+    }
+
+    /**
+     * Login user with provided credentials.
+     *
+     * @return a future completed when the user is logged in
+     */
+    public CompletableFuture<Void> login() {
+        if (!(credentials instanceof UserPassword)) {
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            result.completeExceptionally(new ClientException("Unsupported programmatic logic provided credentials", null));
+            return result;
+        }
+        String requestURI = AUTHENTICATION_LOGIN //
+                .set("login", credentials.getUser()) //
+                .set("password", credentials.getPassword()) //
+                .expand(serverURL);
+        return process(SimpleRequestBuilder.post(requestURI).build());
+    }
+
+    /**
+     * Validate provided credentials.
+     *
+     * @return a future of {@code true} is connection and credentials are
+     *         verified with success, {@code false} otherwise.
+     */
+    public CompletableFuture<Boolean> testConnection() {
+        String requestURI = AUTHENTICATION_VALIDATE.expand(serverURL);
+        CompletableFuture<Authentication> result = process(SimpleRequestBuilder.get(requestURI).build(), Authentication.class);
+        return cancelling(result.handle((auth, e) -> e == null && auth != null && auth.isValid()), result);
+    }
+
+    /**
+     * Gets all projects the use have access to.
+     *
+     * @return a future of the list of Sonarqube project
+     */
+    public CompletableFuture<List<Project>> getProjects() {
+        Expansion template = PROJECTS_SEARCH.set(QUERY_PARAM_QUERY, null);
+        return getPaginated(template, ProjectSearchResponse.class);
+    }
+
+    /**
+     * Gets all projects the use have access to.
+     *
+     * @param searchKey Limit search to component names that contain the
+     *        supplied string or component keys that contain the supplied string
+     * @return a future of the list of Sonarqube project
+     */
+    public CompletableFuture<List<Project>> getProjects(String searchKey) {
+        Expansion template = PROJECTS_SEARCH.set(QUERY_PARAM_QUERY, searchKey);
+        return getPaginated(template, ProjectSearchResponse.class);
+    }
+
+    /**
+     * Get project associated with the given key.
+     *
+     * @param key sonar project key
+     * @return a future of Sonarqube project
+     */
+    public CompletableFuture<List<Project>> getProject(String key) {
+        Expansion template = PROJECTS_SEARCH.set(QUERY_PARAM_PRJS, key);
+        return getPaginated(template, ProjectSearchResponse.class);
+    }
+
+    /**
+     * Gets ALM settings associate to the given project key.
+     *
+     * @param key sonar project key
+     * @return a future of ALM settings
+     */
+    public CompletableFuture<ALMSettings> getALMSettings(String key) {
+        String requestURI = ALM_SETTINGS.set(QUERY_PARAM_PRJ, key) //
+                .expand(serverURL);
+        return process(SimpleRequestBuilder.get(requestURI).build(), ALMSettings.class);
+    }
+
+    /**
+     * Sets ALM settings associate to the given project key.
+     *
+     * @param projectKey sonar project key
+     * @param almName settings
+     * @param repository name that contains sources
+     * @return a future of alm settings
+     */
+    public CompletableFuture<ALMSettings> setALMSettings(String projectKey, String almName, String repository) {
+        String requestURI = ALM_SETTINGS_BB.set(QUERY_PARAM_PRJ, projectKey) //
+                .set(QUERY_PARAM_ALM_KEY, almName) //
+                .set(QUERY_PARAM_REPO_KEY, repository) //
+                .expand(serverURL);
+        if (skip(requestURI)) {
+            ALMSettings settings = new ALMSettings();
+            settings.setKey(almName);
+            settings.setRepository(repository);
+            return CompletableFuture.completedFuture(settings);
+        }
+        return process(SimpleRequestBuilder.get(requestURI).build(), ALMSettings.class);
+    }
+
+    /**
+     * Returns all project links of the given project.
+     *
+     * @param projectKey sonar project key
+     * @return a future of the list of project link
+     */
+    public CompletableFuture<List<ProjectLink>> getProjectLinks(String projectKey) {
+        String requestURI = PROJECT_LINKS.set(QUERY_PARAM_PRJ_KEY, projectKey) //
+                .expand(serverURL);
+        CompletableFuture<ProjectLinks> result = process(SimpleRequestBuilder.get(requestURI).build(), ProjectLinks.class);
+        return cancelling(result.thenApply(ProjectLinks::getLinks), result);
+    }
+
+    /**
+     * Gets global web hooks.
+     *
+     * @return a future of all configured web hooks
+     */
+    public CompletableFuture<List<Webhook>> getWebhooks() {
+        return getWebhooks(null);
+    }
+
+    /**
+     * Gets web hooks associated to the given project.
+     *
+     * @param projectKey of the project to search for
+     * @return a future of all configured web hooks
+     */
+    public CompletableFuture<List<Webhook>> getWebhooks(String projectKey) {
+        String requestURI = WEBHOOK_GET.set(QUERY_PARAM_PRJ, projectKey) //
+                .expand(serverURL);
+        CompletableFuture<WebhookResponse> result = process(SimpleRequestBuilder.get(requestURI).build(), WebhookResponse.class);
+        return cancelling(result.thenApply(WebhookResponse::getWebhooks), result);
+    }
+
+    /**
+     * Creates a new web hook to the specified project.
+     *
+     * @param projectKey of the project to search for
+     * @param webhook to create
+     * @return a future of created web hook
+     */
+    public CompletableFuture<Webhook> addWebhook(String projectKey, Webhook webhook) {
+        String requestURI = WEBHOOK_CREATE.set(QUERY_PARAM_PRJ, projectKey) //
+                .set(QUERY_PARAM_WEBHOOK_NAME, webhook.getName()) //
+                .set(QUERY_PARAM_WEBHOOK_URL, webhook.getURL()) //
+                .set(QUERY_PARAM_SECRET, webhook.getSecret()) //
+                .expand(serverURL);
+        if (skip(requestURI)) {
+            return CompletableFuture.completedFuture(webhook);
+        }
+        CompletableFuture<WebhookResponse> result = process(SimpleRequestBuilder.post(requestURI).build(), WebhookResponse.class);
+        return cancelling(result.thenApply(WebhookResponse::getWebhook), result);
+    }
+
+    /**
+     * Creates a new global web hook.
+     *
+     * @param webhook to create
+     * @return a future of created web hook
+     */
+    public CompletableFuture<Webhook> addWebhook(Webhook webhook) {
+        return addWebhook(null, webhook);
+    }
+
+    /**
+     * Deletes a web hook that matches the given identifier.
+     *
+     * @param webhookKey webhook identifier
+     * @return a future completed when the web hook is deleted
+     */
+    public CompletableFuture<Void> deleteWebhook(String webhookKey) {
+        String requestURI = WEBHOOK_DELETE.set(QUERY_PARAM_WEBHOOK_KEY, webhookKey) //
+                .expand(serverURL);
+        if (skip(requestURI)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return process(SimpleRequestBuilder.post(requestURI).build());
+    }
+
+    /*
+     * In dry run mode requests that modify the server are only logged,
+     * without the query that could contain secrets.
+     */
+    private boolean skip(String requestURI) {
+        if (dryRun) {
+            logger.info("Dry run, skip " + endpointName(requestURI));
+        }
+        return dryRun;
+    }
+
+    private void setupRequest(SimpleHttpRequest request) {
+        if (!request.containsHeader(HttpHeaders.ACCEPT)) {
+            request.addHeader(ACCEPT_JSON);
+        }
+        credentials.apply(request);
+    }
+
+    protected void buildClient() {
+        client = HttpAsyncClients.custom() //
+                .setConnectionManager(PoolingAsyncClientConnectionManagerBuilder.create() //
+                        .setMaxConnTotal(maxConnections) //
+                        .setMaxConnPerRoute(maxConnections) //
+                        .build()) //
+                // retries are scheduled by the retry policy
+                .disableAutomaticRetries() //
+                .build();
+        client.start();
+    }
+
+    private void buildJSONConverter() {
+        objectMapper = new ObjectMapper();
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        client.close(CloseMode.GRACEFUL);
+    }
+
+    public int getRetry() {
+        return retryPolicy.getMaxRetries();
+    }
+
+    /**
+     * Sets the maximum number of retries of the current retry policy.
+     *
+     * @param retry max retries, 0 disables retries
+     * @see #setRetryPolicy(RetryPolicy)
+     */
+    public void setRetry(int retry) {
+        retryPolicy.setMaxRetries(retry);
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Sets how failed requests are retried, with the same rules of
+     * {@link SonarqubeServerClient#setRetryPolicy(RetryPolicy)}. A policy can
+     * be shared with a blocking client.
+     *
+     * @param retryPolicy the retry policy
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = Objects.requireNonNull(retryPolicy);
+    }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    /**
+     * When enabled {@link #addWebhook(String, Webhook)},
+     * {@link #deleteWebhook(String)} and
+     * {@link #setALMSettings(String, String, String)} do not send any request
+     * to the server, they log it and complete with what was given.
+     *
+     * @param dryRun {@code true} to not modify the server
+     */
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+}
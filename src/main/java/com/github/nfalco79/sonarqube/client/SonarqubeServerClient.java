@@ -17,36 +17,87 @@ package com.github.nfalco79.sonarqube.client;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import javax.net.ssl.SSLException;
+
+import org.apache.hc.client5.http.ConnectTimeoutException;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
 import org.apache.hc.client5.http.classic.methods.HttpUriRequest;
-import org.apache.hc.client5.http.impl.DefaultHttpRequestRetryStrategy;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpStatus;
-import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.apache.hc.core5.pool.PoolStats;
 
-import com.damnhandy.uri.template.UriTemplate;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.github.nfalco79.sonarqube.client.Credentials.UserPassword;
+import com.github.nfalco79.sonarqube.client.RequestTemplate.Expansion;
+import com.github.nfalco79.sonarqube.client.SingleFlight.Loader;
+import com.github.nfalco79.sonarqube.client.cache.CacheEntry;
+import com.github.nfalco79.sonarqube.client.cache.ResponseCache;
+import com.github.nfalco79.sonarqube.client.internal.rest.ComponentsReader;
 import com.github.nfalco79.sonarqube.client.internal.rest.PaginatedResponse;
 import com.github.nfalco79.sonarqube.client.internal.rest.PaginatedResponse.Paging;
 import com.github.nfalco79.sonarqube.client.internal.rest.ProjectLinks;
 import com.github.nfalco79.sonarqube.client.internal.rest.ProjectSearchResponse;
+import com.github.nfalco79.sonarqube.client.internal.rest.ResponseReader;
 import com.github.nfalco79.sonarqube.client.internal.rest.WebhookResponse;
+import com.github.nfalco79.sonarqube.client.limit.AIMDLimiter;
+import com.github.nfalco79.sonarqube.client.limit.ConcurrencyLimiter;
+import com.github.nfalco79.sonarqube.client.limit.ConcurrencyLimiter.Permit;
+import com.github.nfalco79.sonarqube.client.metrics.MetricsListener;
+import com.github.nfalco79.sonarqube.client.metrics.RequestEvent;
 import com.github.nfalco79.sonarqube.client.model.ALMSettings;
 import com.github.nfalco79.sonarqube.client.model.Authentication;
 import com.github.nfalco79.sonarqube.client.model.Project;
 import com.github.nfalco79.sonarqube.client.model.ProjectLink;
 import com.github.nfalco79.sonarqube.client.model.Webhook;
+import com.github.nfalco79.sonarqube.client.transport.HttpClientTransport;
+import com.github.nfalco79.sonarqube.client.transport.Transport;
 
 /**
  * Client of Bitbucket Cloud.
@@ -55,40 +106,69 @@ import com.github.nfalco79.sonarqube.client.model.Webhook;
  */
 public class SonarqubeServerClient implements Closeable {
 
-    // private static final String DEFAULT_PAGE_LEN = "100";
+    // maximum page size accepted by /api/projects/search
+    /* package */ static final int DEFAULT_PAGE_LEN = 500;
+    private static final int DEFAULT_PARALLELISM = 4;
+    // keys looked up by a single request, a batch always fits in one page
+    /* package */ static final int MAX_KEYS_PER_REQUEST = DEFAULT_PAGE_LEN;
+    // keeps the request line well below the 8KB header limit of common servers and proxies
+    /* package */ static final int MAX_URI_LENGTH = 6000;
+    private static final int DEFAULT_INITIAL_LIMIT = 8;
+    // how late a cancelled deadline is noticed while waiting for a permit
+    private static final long PERMIT_WAIT_SLICE = TimeUnit.MILLISECONDS.toNanos(50);
 
-    private static final String QUERY_PARAM_QUERY = "q";
-    private static final String QUERY_PARAM_PRJS = "projects";
-    private static final String QUERY_PARAM_PRJ = "project";
-    private static final String QUERY_PARAM_PRJ_KEY = "projectKey";
+    /* package */ static final String QUERY_PARAM_QUERY = "q";
+    /* package */ static final String QUERY_PARAM_PRJS = "projects";
+    /* package */ static final String QUERY_PARAM_PRJ = "project";
+    /* package */ static final String QUERY_PARAM_PRJ_KEY = "projectKey";
     // private static final String QUERY_PARAM_PRJ_ID = "projectId";
-    private static final String QUERY_PARAM_REPO_KEY = "repository";
-    private static final String QUERY_PARAM_SECRET = "secret";
-    private static final String QUERY_PARAM_WEBHOOK_URL = "url";
-    private static final String QUERY_PARAM_WEBHOOK_NAME = "name";
-    private static final String QUERY_PARAM_WEBHOOK_KEY = "webhook";
-    private static final String QUERY_PARAM_ALM_KEY = "almSetting";
-    private static final String QUERY_PARAM_PAGE = "p";
-    private static final String QUERY_PARAM_PAGESIZE = "ps";
+    /* package */ static final String QUERY_PARAM_REPO_KEY = "repository";
+    /* package */ static final String QUERY_PARAM_SECRET = "secret";
+    /* package */ static final String QUERY_PARAM_WEBHOOK_URL = "url";
+    /* package */ static final String QUERY_PARAM_WEBHOOK_NAME = "name";
+    /* package */ static final String QUERY_PARAM_WEBHOOK_KEY = "webhook";
+    /* package */ static final String QUERY_PARAM_ALM_KEY = "almSetting";
+    /* package */ static final String QUERY_PARAM_PAGE = "p";
+    /* package */ static final String QUERY_PARAM_PAGESIZE = "ps";
+    /* package */ static final String QUERY_PARAM_ANALYZED_BEFORE = "analyzedBefore";
+    /* package */ static final String QUERY_PARAM_PROVISIONED = "onProvisionedOnly";
     
+    // POST endpoints whose effect does not change if repeated
+    private static final Set<String> IDEMPOTENT_ENDPOINTS = new HashSet<>(Arrays.asList("authentication.login", //
+            "alm_settings.set_bitbucketcloud_binding", //
+            "webhooks.delete"));
+    /* package */ static final Header ACCEPT_JSON = new BasicHeader(HttpHeaders.ACCEPT, "application/json;charset=utf-8");
+
     // REST APIs
-    private static final String AUTHENTICATION_VALIDATE = "/api/authentication/validate";
-    private static final String AUTHENTICATION_LOGIN = "/api/authentication/login{?login,password}";
-    private static final String PROJECTS_SEARCH = "/api/projects/search{?projects,qualifiers,q,p,ps}";
-    private static final String PROJECT_LINKS = "/api/project_links/search{?projectId,projectKey}";
-    private static final String ALM_SETTINGS = "/api/alm_settings/get_binding{?project}";
-    private static final String ALM_SETTINGS_BB = "/api/alm_settings/set_bitbucketcloud_binding{?almSetting,project,repository}";
-    private static final String WEBHOOK_GET = "/api/webhooks/list{?project}";
-    private static final String WEBHOOK_CREATE = "/api/webhooks/create{?name,project,secret,url}";
-    private static final String WEBHOOK_DELETE = "/api/webhooks/delete{?webhook}";
+    /* package */ static final RequestTemplate AUTHENTICATION_VALIDATE = RequestTemplate.compile("/api/authentication/validate");
+    /* package */ static final RequestTemplate AUTHENTICATION_LOGIN = RequestTemplate.compile("/api/authentication/login{?login,password}");
+    /* package */ static final RequestTemplate PROJECTS_SEARCH = RequestTemplate.compile("/api/projects/search{?projects,qualifiers,q,analyzedBefore,onProvisionedOnly,p,ps}");
+    /* package */ static final RequestTemplate PROJECT_LINKS = RequestTemplate.compile("/api/project_links/search{?projectId,projectKey}");
+    /* package */ static final RequestTemplate ALM_SETTINGS = RequestTemplate.compile("/api/alm_settings/get_binding{?project}");
+    /* package */ static final RequestTemplate ALM_SETTINGS_BB = RequestTemplate.compile("/api/alm_settings/set_bitbucketcloud_binding{?almSetting,project,repository}");
+    /* package */ static final RequestTemplate WEBHOOK_GET = RequestTemplate.compile("/api/webhooks/list{?project}");
+    /* package */ static final RequestTemplate WEBHOOK_CREATE = RequestTemplate.compile("/api/webhooks/create{?name,project,secret,url}");
+    /* package */ static final RequestTemplate WEBHOOK_DELETE = RequestTemplate.compile("/api/webhooks/delete{?webhook}");
 
     protected final Logger logger = Logger.getLogger("BitcketCloudClient");
 
     protected ObjectMapper objectMapper;
+    private final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
     private Credentials credentials;
-    private int retry = 3;
-    private boolean dryRun;
-    private CloseableHttpClient client;
+    private volatile Session session;
+    private final ReentrantLock loginLock = new ReentrantLock();
+    private volatile RetryPolicy retryPolicy = new RetryPolicy();
+    private ResponseCache cache;
+    private final SingleFlight inFlight = new SingleFlight();
+    private volatile boolean dryRun;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private boolean virtualThreads = Workers.isVirtualThreadSupported();
+    private ExecutorService executor;
+    private final ConnectionPoolSettings poolSettings;
+    private MetricsListener metricsListener;
+    private ConcurrencyLimiter limiter;
+    private volatile CircuitBreaker circuitBreaker;
+    private Transport transport;
     private final String serverURL;
 
     /**
@@ -98,57 +178,584 @@ public class SonarqubeServerClient implements Closeable {
      * @param credentials the object containing the server info
      */
     public SonarqubeServerClient(String serverURL, Credentials credentials) {
+        this(serverURL, credentials, new ConnectionPoolSettings());
+    }
+
+    /**
+     * BBClient constructor which requires server info.
+     *
+     * @param serverURL sonarqube URL
+     * @param credentials the object containing the server info
+     * @param poolSettings the settings of the connection pool
+     */
+    public SonarqubeServerClient(String serverURL, Credentials credentials, ConnectionPoolSettings poolSettings) {
         this.serverURL = serverURL;
         this.credentials = credentials;
+        this.poolSettings = poolSettings;
         buildJSONConverter();
         buildClient();
+        this.limiter = new AIMDLimiter(DEFAULT_INITIAL_LIMIT, 1, transport.getMaxConcurrency());
+    }
+
+    /**
+     * BBClient constructor which sends requests through the given transport.
+     *
+     * @param serverURL sonarqube URL
+     * @param credentials the object containing the server info
+     * @param transport the transport used to send requests, closed with
+     *        this client
+     */
+    public SonarqubeServerClient(String serverURL, Credentials credentials, Transport transport) {
+        this.serverURL = serverURL;
+        this.credentials = credentials;
+        this.poolSettings = null;
+        this.transport = transport;
+        this.limiter = new AIMDLimiter(DEFAULT_INITIAL_LIMIT, 1, transport.getMaxConcurrency());
+        buildJSONConverter();
+    }
+
+    private <T> List<T> getPaginated(Expansion template, Class<? extends PaginatedResponse<T>> type) throws ClientException {
+        String uri = template.set(QUERY_PARAM_PAGESIZE, DEFAULT_PAGE_LEN).expand(serverURL);
+        PaginatedResponse<T> response = process(new HttpGet(uri), type);
+        Paging page = response.getPaging();
+
+        List<T> result = new ArrayList<T>(Math.max(page.getTotal(), response.getComponents().size()));
+        result.addAll(response.getComponents());
+
+        // the first page tells how many pages remain, request all of them at once
+        int pageSize = page.getPageSize();
+        int lastPage = pageSize > 0 ? (page.getTotal() + pageSize - 1) / pageSize : page.getPageIndex();
+        if (lastPage > page.getPageIndex()) {
+            List<FutureTask<PaginatedResponse<T>>> tasks = new ArrayList<>(lastPage - page.getPageIndex());
+            Deadline scope = Deadline.fork();
+            Deadline previous = Deadline.enter(scope);
+            boolean completed = false;
+            try {
+                for (int pageIndex = page.getPageIndex() + 1; pageIndex <= lastPage; pageIndex++) {
+                    String pageURI = template.set(QUERY_PARAM_PAGE, pageIndex) //
+                            .set(QUERY_PARAM_PAGESIZE, pageSize) //
+                            .expand(serverURL);
+                    FutureTask<PaginatedResponse<T>> task = new FutureTask<>(Deadline.propagate(() -> process(new HttpGet(pageURI), type)));
+                    tasks.add(task);
+                    getExecutor().execute(task);
+                }
+                for (FutureTask<PaginatedResponse<T>> task : tasks) {
+                    // run the page in the caller thread if no worker has picked it up yet
+                    task.run();
+                    result.addAll(await(task).getComponents());
+                }
+                completed = true;
+            } finally {
+                Deadline.enter(previous);
+                tasks.forEach(task -> task.cancel(false));
+                abortUnlessCompleted(scope, completed);
+            }
+        }
+        return result;
+    }
+
+    private <T> PageIterator<T> iterate(Expansion template, Class<? extends PaginatedResponse<T>> type) {
+        String uri = template.set(QUERY_PARAM_PAGESIZE, DEFAULT_PAGE_LEN).expand(serverURL);
+        // pages are read later, bound to the deadline of the caller that opened the iterator
+        Deadline deadline = Deadline.current();
+        return new PageIterator<T>(Deadline.propagate(deadline, () -> process(new HttpGet(uri), type)), (pageIndex, pageSize) -> {
+            String pageURI = template.set(QUERY_PARAM_PAGE, pageIndex) //
+                    .set(QUERY_PARAM_PAGESIZE, pageSize) //
+                    .expand(serverURL);
+            return Deadline.propagate(deadline, () -> process(new HttpGet(pageURI), type));
+        }, getExecutor());
     }
 
-    private <T> List<T> getPaginated(UriTemplate template, Class<? extends PaginatedResponse<T>> type) throws ClientException {
-        List<T> result = new ArrayList<T>();
-        String uri = template.expand();
+    private <T> void forEachPaginated(Expansion template, Class<T> componentType, Consumer<? super T> action) throws ClientException {
+        String uri = template.set(QUERY_PARAM_PAGESIZE, DEFAULT_PAGE_LEN).expand(serverURL);
         while (uri != null) {
-            PaginatedResponse<T> response = process(new HttpGet(uri), type);
-            Paging page = response.getPaging();
-            int last = page.getPageSize() * page.getPageIndex();
-            if (last < page.getTotal()) {
+            // a retried page resumes from the first component not yet delivered
+            ComponentsReader<T> reader = new ComponentsReader<>(readerFor(Paging.class), readerFor(componentType), action);
+            Paging page = process(new HttpGet(uri), reader);
+            if (page != null && page.getPageSize() * page.getPageIndex() < page.getTotal()) {
                 uri = template.set(QUERY_PARAM_PAGE, page.getPageIndex() + 1) //
                         .set(QUERY_PARAM_PAGESIZE, page.getPageSize()) //
-                        .expand();
+                        .expand(serverURL);
             } else {
                 uri = null;
             }
-            result.addAll(response.getComponents());
         }
-        return result;
     }
 
-    @SuppressWarnings("unchecked")
+    private ObjectReader readerFor(Class<?> type) {
+        return readers.computeIfAbsent(type, objectMapper::readerFor);
+    }
+
+    @FunctionalInterface
+    /* package */ interface Call<K, V> {
+        V call(K key) throws ClientException;
+    }
+
+    /*
+     * Performs the call for each key on the worker pool. Results are handed
+     * to the handlers in the caller thread as soon as each call completes.
+     */
+    /* package */ <K, V> void forEachConcurrently(Collection<K> keys, Call<K, V> call, BiConsumer<K, V> onSuccess, BiConsumer<K, ClientException> onFailure) throws ClientException {
+        Map<K, FutureTask<V>> tasks = new LinkedHashMap<>();
+        // keys may be null, completed tasks are queued instead
+        BlockingQueue<FutureTask<V>> completed = new LinkedBlockingQueue<>();
+        Map<FutureTask<V>, K> keyOf = new HashMap<>();
+        Deadline scope = Deadline.fork();
+        Deadline previous = Deadline.enter(scope);
+        boolean done = false;
+        try {
+            for (K key : keys) {
+                if (!tasks.containsKey(key)) {
+                    FutureTask<V> task = new FutureTask<V>(Deadline.propagate(() -> call.call(key))) {
+                        @Override
+                        protected void done() {
+                            completed.add(this);
+                        }
+                    };
+                    tasks.put(key, task);
+                    keyOf.put(task, key);
+                    getExecutor().execute(task);
+                }
+            }
+            // workers take calls from the head, the caller from the tail
+            List<FutureTask<V>> queued = new ArrayList<>(tasks.values());
+            ListIterator<FutureTask<V>> pending = queued.listIterator(queued.size());
+            for (int i = 0; i < tasks.size(); i++) {
+                FutureTask<V> task = completed.poll();
+                while (task == null && pending.hasPrevious()) {
+                    // run a call in the caller thread if no worker has picked it up yet
+                    pending.previous().run();
+                    task = completed.poll();
+                }
+                if (task == null) {
+                    task = take(completed);
+                }
+                K key = keyOf.get(task);
+                V result;
+                try {
+                    result = await(task);
+                } catch (ClientException e) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw e;
+                    }
+                    onFailure.accept(key, e);
+                    continue;
+                }
+                onSuccess.accept(key, result);
+            }
+            done = true;
+        } finally {
+            Deadline.enter(previous);
+            tasks.values().forEach(task -> task.cancel(false));
+            abortUnlessCompleted(scope, done);
+        }
+    }
+
+    private static <T> T take(BlockingQueue<T> queue) throws ClientException {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientException("Interrupted while waiting for response", e);
+        }
+    }
+
+    /*
+     * When the caller stops waiting, because interrupted or failed, the
+     * requests still in flight on the workers are aborted to free their
+     * connections.
+     */
+    private static void abortUnlessCompleted(Deadline scope, boolean completed) {
+        if (!completed) {
+            scope.cancel();
+        }
+        scope.close();
+    }
+
+    /* package */ static <T> T await(FutureTask<T> task) throws ClientException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientException("Interrupted while waiting for response", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ClientException) {
+                throw (ClientException) cause;
+            }
+            throw new ClientException("Client fails to process request", cause);
+        }
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null && virtualThreads) {
+            executor = Workers.newVirtualThreadExecutor("sonarqube-client-");
+        }
+        if (executor == null) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "sonarqube-client-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
     protected <T> T process(HttpUriRequest request, Object type) throws ClientException {
-        CloseableHttpResponse response = null;
+        String endpoint = endpointName(request.getPath());
+        MetricsListener listener = metricsListener;
+        RequestEvent event = listener != null ? new RequestEvent(endpoint, request.getMethod()) : null;
+        boolean renewed = false;
+        Deadline deadline = Deadline.current();
         try {
-            setupRequest(request);
-            response = client.execute(request);
+            for (int retry = 1;; retry++) {
+                Session used = session;
+                try {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new ClientException("Interrupted before sending " + request.getRequestUri(), new InterruptedException());
+                    }
+                    if (deadline != null) {
+                        deadline.check();
+                    }
+                    return execute(request, type, event);
+                } catch (ClientException e) {
+                    if (!renewed && used != null && e.getStatus() == HttpStatus.SC_UNAUTHORIZED && !(request instanceof Session.Login)) {
+                        // the session has expired, sent again once logged in
+                        renewed = true;
+                        long start = System.nanoTime();
+                        try {
+                            renewSession(used);
+                        } finally {
+                            if (event != null) {
+                                event.setSessionRenewal(System.nanoTime() - start);
+                            }
+                        }
+                        retry--;
+                        continue;
+                    }
+                    RetryPolicy policy = retryPolicy;
+                    Duration delay = isRetriable(endpoint, request, e) ? policy.getDelay(retry, e.getRetryAfter()) : null;
+                    if (delay == null) {
+                        throw e;
+                    }
+                    if (logger.isLoggable(Level.FINE)) {
+                        logger.log(Level.FINE, "Retry " + retry + " of " + request.getRequestUri() + " in " + delay.toMillis() + "ms", e);
+                    }
+                    if (event != null) {
+                        event.setRetries(retry);
+                    }
+                    sleep(request, delay, deadline);
+                }
+            }
+        } finally {
+            if (event != null) {
+                publish(listener, event);
+            }
+        }
+    }
+
+    /*
+     * Only the first of the requests failed with the same expired session
+     * logs in again, the others are sent with the renewed session. A lock
+     * instead of a monitor does not pin the carrier of a virtual thread
+     * waiting for the login.
+     */
+    private void renewSession(Session expired) throws ClientException {
+        try {
+            loginLock.lockInterruptibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientException("Interrupted while waiting for login", e);
+        }
+        try {
+            if (session == expired) {
+                session = null;
+                login();
+            }
+        } finally {
+            loginLock.unlock();
+        }
+    }
+
+    /*
+     * Requests rejected by an overloaded server or never sent are always safe
+     * to retry, the others only if they can be repeated without side effects.
+     */
+    private boolean isRetriable(String endpoint, HttpUriRequest request, ClientException e) {
+        if (request instanceof CircuitBreaker.Probe) {
+            // a health check answers at once
+            return false;
+        }
+        return isRetriable(endpoint, request.getMethod(), e);
+    }
+
+    /* package */ static boolean isRetriable(String endpoint, String method, ClientException e) {
+        int status = e.getStatus();
+        Throwable cause = e.getCause();
+        if (isOverloaded(status) || cause instanceof ConnectException || cause instanceof ConnectTimeoutException) {
+            return true;
+        }
+        if (!isIdempotent(endpoint, method)) {
+            return false;
+        }
+        if (status == HttpStatus.SC_BAD_GATEWAY || status == HttpStatus.SC_GATEWAY_TIMEOUT) {
+            return true;
+        }
+        return status == 0 && cause instanceof IOException //
+                && !(cause instanceof JsonProcessingException //
+                        || cause instanceof UnknownHostException //
+                        || cause instanceof SSLException //
+                        || cause instanceof InterruptedIOException);
+    }
+
+    private static boolean isIdempotent(String endpoint, String method) {
+        return "GET".equals(method) || "HEAD".equals(method) || IDEMPOTENT_ENDPOINTS.contains(endpoint);
+    }
+
+    private static void sleep(HttpUriRequest request, Duration delay, Deadline deadline) throws ClientException {
+        try {
+            if (deadline != null) {
+                deadline.sleep(delay.toNanos());
+            } else {
+                TimeUnit.NANOSECONDS.sleep(delay.toNanos());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientException("Interrupted while waiting to retry " + request.getRequestUri(), e);
+        }
+    }
+
+    /*
+     * The request is aborted if the deadline expires or it is cancelled
+     * while waiting for or reading the response.
+     */
+    private <T> T execute(HttpUriRequest request, Object type, RequestEvent event) throws ClientException {
+        Deadline deadline = Deadline.current();
+        if (deadline == null) {
+            return exchange(request, type, event, null);
+        }
+        Cancellable abort = () -> {
+            request.abort();
+            return true;
+        };
+        deadline.register(abort);
+        try {
+            return exchange(request, type, event, deadline);
+        } catch (ClientException e) {
+            if (deadline.isCancelled()) {
+                deadline.check();
+            }
+            throw e;
+        } finally {
+            deadline.unregister(abort);
+        }
+    }
+
+    private static boolean isAborted(HttpUriRequest request, Deadline deadline) {
+        return request.isAborted() || deadline != null && deadline.isCancelled() || Thread.currentThread().isInterrupted();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T exchange(HttpUriRequest request, Object type, RequestEvent event, Deadline deadline) throws ClientException {
+        ClassicHttpResponse response = null;
+        CountingEntity entity = null;
+        CircuitBreaker breaker = request instanceof CircuitBreaker.Probe ? null : circuitBreaker;
+        if (breaker != null) {
+            checkCircuit(breaker);
+        }
+        long start = System.nanoTime();
+        Permit permit = acquire(request, deadline);
+        long sent = System.nanoTime();
+        try {
+            String authentication = setupRequest(request);
+            if (event != null) {
+                event.setAuthentication(authentication);
+            }
+            response = transport.execute(request);
         } catch (IOException e) {
             throw new ClientException("Client fails on URL " + request.getRequestUri(), e);
+        } finally {
+            long leaseWait = transport.takeQueueWait();
+            long received = System.nanoTime();
+            if (permit != null) {
+                if (response == null) {
+                    permit.onIgnore();
+                } else if (isOverloaded(response.getCode())) {
+                    permit.onDropped();
+                } else {
+                    permit.onSuccess(received - sent - leaseWait);
+                }
+            }
+            if (breaker != null && (response != null || !isAborted(request, deadline))) {
+                // a request aborted by the caller says nothing about the server health
+                breaker.record(response == null || response.getCode() >= HttpStatus.SC_SERVER_ERROR, received - sent - leaseWait);
+            }
+            if (event != null) {
+                event.setQueueWait(event.getQueueWait() + sent - start + leaseWait);
+                event.setTimeToFirstByte(received - sent - leaseWait);
+                event.setStatus(response != null ? response.getCode() : 0);
+                if (response != null && response.getEntity() != null) {
+                    entity = new CountingEntity(response.getEntity());
+                    response.setEntity(entity);
+                }
+            }
         }
 
-        if (response.getCode() == HttpStatus.SC_NO_CONTENT) {
-            return null;
-        } else if (response.getCode() >= HttpStatus.SC_OK && response.getCode() < 300) {
-            try {
-                if (type instanceof Class) {
-                    return objectMapper.readValue(response.getEntity().getContent(), (Class<T>) type);
-                } else if (type instanceof TypeReference) {
-                    return objectMapper.readValue(response.getEntity().getContent(), (TypeReference<T>) type);
-                } else {
+        try {
+            Session current = request instanceof Session.Login ? ((Session.Login) request).getSession() : session;
+            if (current != null) {
+                current.update(response);
+            }
+            if (request instanceof ConditionalGet) {
+                ConditionalGet conditional = (ConditionalGet) request;
+                Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+                conditional.setETag(etag != null ? etag.getValue() : null);
+                if (response.getCode() == HttpStatus.SC_NOT_MODIFIED) {
+                    conditional.setNotModified(true);
                     return null;
                 }
-            } catch (UnsupportedOperationException | IOException e) {
-                throw new ClientException("Fail to deserialize response.", e);
             }
-        } else {
-            throw new ClientException(response);
+            if (response.getCode() == HttpStatus.SC_NO_CONTENT) {
+                return null;
+            } else if (response.getCode() >= HttpStatus.SC_OK && response.getCode() < 300) {
+                long readStart = System.nanoTime();
+                try {
+                    if (type instanceof Class) {
+                        return objectMapper.readValue(response.getEntity().getContent(), (Class<T>) type);
+                    } else if (type instanceof TypeReference) {
+                        return objectMapper.readValue(response.getEntity().getContent(), (TypeReference<T>) type);
+                    } else if (type instanceof ResponseReader) {
+                        return ((ResponseReader<T>) type).read(response.getEntity().getContent());
+                    } else {
+                        return null;
+                    }
+                } catch (UnsupportedOperationException | IOException e) {
+                    throw new ClientException("Fail to deserialize response.", e);
+                } finally {
+                    if (event != null) {
+                        event.setDeserialization(System.nanoTime() - readStart);
+                    }
+                }
+            } else {
+                throw new ClientException(response);
+            }
+        } finally {
+            release(response);
+            if (entity != null) {
+                event.setResponseBytes(event.getResponseBytes() + entity.getCount());
+            }
+        }
+    }
+
+    /*
+     * Fails fast while the breaker is open, once the open time is over the
+     * caller checks if the server is back.
+     */
+    private void checkCircuit(CircuitBreaker breaker) throws ClientException {
+        if (breaker.allowRequest()) {
+            return;
+        }
+        if (breaker.startProbe()) {
+            boolean healthy;
+            try {
+                healthy = probe();
+            } catch (ClientException | RuntimeException e) {
+                // the caller gave up, the next one checks the server again
+                breaker.onProbeAborted();
+                throw e;
+            }
+            breaker.onProbe(healthy);
+            if (healthy) {
+                return;
+            }
+        }
+        throw new CircuitBreakerOpenException(serverURL, breaker.getRemainingOpen());
+    }
+
+    /*
+     * The server is healthy if it answers without a 5xx status, an error
+     * about the credentials, as an expired session, comes from a working
+     * server. Throws if the probe is aborted by its caller.
+     */
+    private boolean probe() throws ClientException {
+        CircuitBreaker.Probe request = new CircuitBreaker.Probe(AUTHENTICATION_VALIDATE.expand(serverURL));
+        try {
+            execute(request, null, null);
+            return true;
+        } catch (ClientException e) {
+            if (e.getStatus() != 0) {
+                return e.getStatus() < HttpStatus.SC_SERVER_ERROR;
+            }
+            if (isAborted(request, Deadline.current())) {
+                throw e;
+            }
+            return false;
+        }
+    }
+
+    private Permit acquire(HttpUriRequest request, Deadline deadline) throws ClientException {
+        ConcurrencyLimiter limiter = this.limiter;
+        if (limiter == null) {
+            return null;
+        }
+        String endpoint = endpointName(request.getPath());
+        try {
+            if (deadline == null) {
+                return limiter.acquire(endpoint);
+            }
+            // waits in slices to notice a cancelled deadline
+            for (;;) {
+                deadline.check();
+                Duration remaining = deadline.getRemaining();
+                long slice = remaining != null ? Math.min(remaining.toNanos(), PERMIT_WAIT_SLICE) : PERMIT_WAIT_SLICE;
+                Permit permit = limiter.tryAcquire(endpoint, slice, TimeUnit.NANOSECONDS);
+                if (permit != null) {
+                    return permit;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientException("Interrupted while waiting to send " + request.getRequestUri(), e);
+        }
+    }
+
+    private static boolean isOverloaded(int status) {
+        return status == HttpStatus.SC_TOO_MANY_REQUESTS || status == HttpStatus.SC_SERVICE_UNAVAILABLE;
+    }
+
+    private void publish(MetricsListener listener, RequestEvent event) {
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(event.toString());
+        }
+        try {
+            listener.onRequest(event);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Metrics listener fails", e);
+        }
+    }
+
+    /*
+     * Consumes any remaining content so that the connection goes back to the
+     * pool instead of being leased forever.
+     */
+    private void release(ClassicHttpResponse response) {
+        try {
+            EntityUtils.consume(response.getEntity());
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Fail to consume response content", e);
+        } finally {
+            try {
+                response.close();
+            } catch (IOException e) {
+                logger.log(Level.FINE, "Fail to close response", e);
+            }
         }
     }
 
@@ -156,27 +763,177 @@ public class SonarqubeServerClient implements Closeable {
         return process(request, null);
     }
 
+    /*
+     * Only one request for the same URI and credentials goes out at a time,
+     * concurrent callers share its outcome. As for cached values, the
+     * returned objects are shared and must not be modified.
+     */
+    private <T> T coalesce(String uri, Loader<T> loader) throws ClientException {
+        return inFlight.execute(Arrays.asList(uri, credentials), loader);
+    }
+
+    /*
+     * Performs a GET through the cache, an expired entry with an entity tag
+     * is revalidated with the server instead of downloaded again.
+     */
+    private <T> T get(String endpoint, String uri, Object type) throws ClientException {
+        Duration timeToLive = cache != null ? cache.getTimeToLive(endpoint) : null;
+        if (timeToLive == null || timeToLive.isZero()) {
+            return coalesce(uri, () -> process(new HttpGet(uri), type));
+        }
+
+        CacheEntry entry = cache.get(uri);
+        if (entry != null && !entry.isExpired()) {
+            return entry.getValue();
+        }
+        return coalesce(uri, () -> {
+            ConditionalGet request = new ConditionalGet(uri, entry != null ? entry.getETag() : null);
+            try {
+                T value = process(request, type);
+                if (request.isNotModified() && entry != null) {
+                    cache.put(uri, entry.renew(timeToLive));
+                    return entry.getValue();
+                }
+                cache.put(uri, CacheEntry.of(value, request.getETag(), timeToLive));
+                return value;
+            } catch (ClientException e) {
+                cacheNotFound(uri, e, timeToLive);
+                throw e;
+            }
+        });
+    }
+
+    private <T> T cached(String endpoint, String key, Loader<T> loader) throws ClientException {
+        Duration timeToLive = cache != null ? cache.getTimeToLive(endpoint) : null;
+        if (timeToLive == null || timeToLive.isZero()) {
+            return coalesce(key, loader);
+        }
+
+        CacheEntry entry = cache.get(key);
+        if (entry != null && !entry.isExpired()) {
+            return entry.getValue();
+        }
+        return coalesce(key, () -> {
+            try {
+                T value = loader.load();
+                cache.put(key, CacheEntry.of(value, null, timeToLive));
+                return value;
+            } catch (ClientException e) {
+                cacheNotFound(key, e, timeToLive);
+                throw e;
+            }
+        });
+    }
+
+    private static <T> List<T> readOnly(List<T> list) {
+        return list != null ? Collections.unmodifiableList(list) : null;
+    }
+
+    private void cacheNotFound(String key, ClientException e, Duration timeToLive) {
+        if (e.getStatus() == HttpStatus.SC_NOT_FOUND) {
+            cache.put(key, CacheEntry.error(e, timeToLive));
+        }
+    }
+
+    private void invalidate(RequestTemplate template) {
+        if (cache != null) {
+            String prefix = serverURL + template.getPath();
+            cache.invalidate(uri -> uri.startsWith(prefix));
+        }
+    }
+
+    /*
+     * Logical name of a REST API, for example /api/webhooks/list becomes
+     * webhooks.list.
+     */
+    /* package */ static String endpointName(String path) {
+        int start = path.indexOf("/api/");
+        start = start == -1 ? 0 : start + "/api/".length();
+        int end = path.indexOf('{', start);
+        if (end == -1) {
+            end = path.indexOf('?', start);
+        }
+        return path.substring(start, end == -1 ? path.length() : end).replace('/', '.');
+    }
+
+    /**
+     * An operation of this client run under a deadline.
+     *
+     * @param <T> the type of result
+     */
+    @FunctionalInterface
+    public interface Operation<T> {
+        T execute(SonarqubeServerClient client) throws ClientException;
+    }
+
+    /**
+     * Runs the given operation under a deadline that applies to all its
+     * requests, including pages and retries. When the deadline expires or
+     * it is cancelled the requests in flight are aborted.
+     *
+     * @param <T> the type of result
+     * @param deadline the deadline or cancellation token of the operation
+     * @param operation the operation, for example
+     *        {@code client -> client.getWebhooks(projectKey)}
+     * @return the result of the operation
+     * @throws ClientException in case of HTTP response from server different
+     *         than 20x codes, or caused by a
+     *         {@link java.util.concurrent.TimeoutException} if the deadline
+     *         expires and a {@link java.util.concurrent.CancellationException}
+     *         if it is cancelled
+     */
+    public <T> T withDeadline(Deadline deadline, Operation<T> operation) throws ClientException {
+        Deadline previous = Deadline.enter(Objects.requireNonNull(deadline));
+        deadline.begin();
+        try {
+            deadline.check();
+            return operation.execute(this);
+        } finally {
+            deadline.end();
+            Deadline.enter(previous);
+        }
+    }
+
     /**
      * Login user with provided credentials.
+     * <p>
+     * If the server opens a web session, the following requests are
+     * authenticated by the session cookies instead of the user password, a
+     * new login is done transparently when the session expires.
      *
      * @throws ClientException in case of HTTP response from server different
      *         than 20x codes
      */
     public void login() throws ClientException {
-        String requestURI = UriTemplate.buildFromTemplate(serverURL + AUTHENTICATION_LOGIN) //
-                .build() //
+        String requestURI = AUTHENTICATION_LOGIN //
                 .set("login", credentials.getUser()) //
                 .set("password", credentials.getPassword()) //
-                .expand();
+                .expand(serverURL);
         if (credentials instanceof UserPassword) {
-            process(new HttpPost(requestURI));
+            Session.Login request = new Session.Login(requestURI);
+            process(request);
+            Session newSession = request.getSession();
+            session = newSession.isOpen() ? newSession : null;
         } else {
             throw new ClientException("Unsupported programmatic logic provided credentials", null);
         }
     }
 
+    /**
+     * Returns if requests are authenticated by a web session opened with
+     * {@link #login()}.
+     *
+     * @return {@code true} if a session is in use, {@code false} otherwise
+     */
+    public boolean isSessionOpen() {
+        return session != null;
+    }
+
     /**
      * Validate provided credentials.
+     * <p>
+     * The request is not retried and is sent even if the circuit breaker is
+     * open.
      *
      * @return {@code true} is connection and credentials are verified with
      *         success, {@code false} otherwise.
@@ -185,8 +942,8 @@ public class SonarqubeServerClient implements Closeable {
      */
     public boolean testConnection() throws ClientException {
         try {
-            String requestURI = UriTemplate.fromTemplate(serverURL + AUTHENTICATION_VALIDATE).expand();
-            Authentication result = process(new HttpGet(requestURI), Authentication.class);
+            String requestURI = AUTHENTICATION_VALIDATE.expand(serverURL);
+            Authentication result = process(new CircuitBreaker.Probe(requestURI), Authentication.class);
             return result.isValid();
         } catch (ClientException e) {
             return false;
@@ -201,8 +958,7 @@ public class SonarqubeServerClient implements Closeable {
      *         than 20x codes
      */
     public List<Project> getProjects() throws ClientException {
-        UriTemplate template = UriTemplate.fromTemplate(serverURL + PROJECTS_SEARCH);
-        return getPaginated(template, ProjectSearchResponse.class);
+        return getPaginated(projectsTemplate(null), ProjectSearchResponse.class);
     }
 
     /**
@@ -215,38 +971,225 @@ public class SonarqubeServerClient implements Closeable {
      *         than 20x codes
      */
     public List<Project> getProjects(String searchKey) throws ClientException {
-        UriTemplate template = UriTemplate.fromTemplate(serverURL + PROJECTS_SEARCH) //
-                .set(QUERY_PARAM_QUERY, searchKey);
-        return getPaginated(template, ProjectSearchResponse.class);
+        return getPaginated(projectsTemplate(searchKey), ProjectSearchResponse.class);
+    }
+
+    /**
+     * Iterates lazily over all projects the user have access to.
+     * <p>
+     * Only the page being consumed is kept in memory, the next page is
+     * requested in background while the caller processes the current one.
+     * The stream should be closed if not fully consumed.
+     *
+     * @return a stream of Sonarqube project
+     * @throws java.io.UncheckedIOException in case of HTTP response from
+     *         server different than 20x codes
+     */
+    public Stream<Project> streamProjects() {
+        return streamProjects(null);
+    }
+
+    /**
+     * Iterates lazily over all projects the user have access to.
+     *
+     * @param searchKey Limit search to component names that contain the
+     *        supplied string or component keys that contain the supplied string
+     * @return a stream of Sonarqube project
+     * @throws java.io.UncheckedIOException in case of HTTP response from
+     *         server different than 20x codes
+     * @see #streamProjects()
+     */
+    public Stream<Project> streamProjects(String searchKey) {
+        PageIterator<Project> iterator = iterate(projectsTemplate(searchKey), ProjectSearchResponse.class);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false) //
+                .onClose(iterator::close);
+    }
+
+    /**
+     * Iterates lazily over all projects the user have access to.
+     *
+     * @param searchKey Limit search to component names that contain the
+     *        supplied string or component keys that contain the supplied string
+     * @return an iterator of Sonarqube project, to close if not fully
+     *         consumed
+     * @throws java.io.UncheckedIOException in case of HTTP response from
+     *         server different than 20x codes
+     * @see #streamProjects()
+     */
+    public CloseableIterator<Project> iterateProjects(String searchKey) {
+        return iterate(projectsTemplate(searchKey), ProjectSearchResponse.class);
+    }
+
+    private Expansion projectsTemplate(String searchKey) {
+        return PROJECTS_SEARCH.set(QUERY_PARAM_QUERY, searchKey);
+    }
+
+    /**
+     * Performs the given action for each project the user have access to.
+     * <p>
+     * Projects are handed to the action while the response is still being
+     * read, without building the whole page in memory.
+     *
+     * @param searchKey Limit search to component names that contain the
+     *        supplied string or component keys that contain the supplied
+     *        string, {@code null} for all projects
+     * @param action to perform on each project
+     * @throws ClientException in case of HTTP response from server different
+     *         than 20x codes
+     */
+    public void forEachProject(String searchKey, Consumer<? super Project> action) throws ClientException {
+        forEachPaginated(projectsTemplate(searchKey), Project.class, action);
     }
 
     /**
      * Get project associated with the given key.
-     * 
+     * <p>
+     * Concurrent identical requests are sent once, so the returned projects are shared
+     * with the other callers and the response cache and must not be
+     * modified.
+     *
      * @param key sonar project key
-     * @return a Sonarqube project
+     * @return an unmodifiable list with the Sonarqube project
      * @throws ClientException in case of HTTP response from server different
      *         than 20x codes
      */
     public List<Project> getProject(String key) throws ClientException {
-        UriTemplate template = UriTemplate.fromTemplate(serverURL + PROJECTS_SEARCH) //
-                .set(QUERY_PARAM_PRJS, key);
-        return getPaginated(template, ProjectSearchResponse.class);
+        Expansion template = PROJECTS_SEARCH.set(QUERY_PARAM_PRJS, key);
+        return cached(PROJECTS_SEARCH.getEndpoint(), template.expand(serverURL), () -> readOnly(getPaginated(template, ProjectSearchResponse.class)));
+    }
+
+    /**
+     * Gets the projects associated with the given keys.
+     * <p>
+     * The keys are sent in batches, as many as the URI length allows up to
+     * {@value #MAX_KEYS_PER_REQUEST} per request, and the batches are sent
+     * concurrently.
+     *
+     * @param keys sonar project keys
+     * @return the project of each key in the given order, empty if the
+     *         project does not exist or the user has no permission on it
+     * @throws ClientException in case of HTTP response from server different
+     *         than 20x codes
+     */
+    public Map<String, Optional<Project>> getProjectsByKeys(Collection<String> keys) throws ClientException {
+        Map<String, Optional<Project>> result = new LinkedHashMap<>();
+        keys.forEach(key -> result.put(key, Optional.empty()));
+        ClientException[] failure = new ClientException[1];
+        forEachConcurrently(batches(result.keySet()), batch -> getPaginated(PROJECTS_SEARCH.set(QUERY_PARAM_PRJS, batch), ProjectSearchResponse.class), //
+                (batch, projects) -> projects.forEach(project -> result.replace(project.getKey(), Optional.of(project))), //
+                (batch, e) -> {
+                    if (failure[0] == null) {
+                        failure[0] = e;
+                    }
+                });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return result;
+    }
+
+    /*
+     * Splits the keys in comma separated lists that fit in a request URI.
+     */
+    private List<String> batches(Collection<String> keys) {
+        int baseLength = PROJECTS_SEARCH.set(QUERY_PARAM_PRJS, "") //
+                .set(QUERY_PARAM_PAGESIZE, DEFAULT_PAGE_LEN) //
+                .expand(serverURL).length();
+        List<String> batches = new ArrayList<>();
+        StringBuilder batch = new StringBuilder();
+        int count = 0;
+        int length = baseLength;
+        for (String key : keys) {
+            // the comma separator is encoded as %2C
+            int keyLength = RequestTemplate.encodedLength(key) + (count > 0 ? 3 : 0);
+            if (count > 0 && (count == MAX_KEYS_PER_REQUEST || length + keyLength > MAX_URI_LENGTH)) {
+                batches.add(batch.toString());
+                batch.setLength(0);
+                count = 0;
+                length = baseLength;
+                keyLength -= 3;
+            }
+            batch.append(count > 0 ? "," : "").append(key);
+            length += keyLength;
+            count++;
+        }
+        if (count > 0) {
+            batches.add(batch.toString());
+        }
+        return batches;
+    }
+
+    /*
+     * Counts the projects that match the filters reading only the paging of
+     * a single element page.
+     */
+    /* package */ int countProjects(String analyzedBefore, boolean provisionedOnly) throws ClientException {
+        String requestURI = PROJECTS_SEARCH.set(QUERY_PARAM_ANALYZED_BEFORE, analyzedBefore) //
+                .set(QUERY_PARAM_PROVISIONED, provisionedOnly ? Boolean.TRUE : null) //
+                .set(QUERY_PARAM_PAGESIZE, 1) //
+                .expand(serverURL);
+        ProjectSearchResponse response = process(new HttpGet(requestURI), ProjectSearchResponse.class);
+        return response.getPaging().getTotal();
     }
 
     /**
      * Gets ALM settings associate to the given project key.
-     * 
+     * <p>
+     * Concurrent identical requests are sent once, so the returned settings are shared
+     * with the other callers and the response cache and must not be
+     * modified.
+     *
      * @param key sonar project key
      * @return ALM settings
      * @throws ClientException in case of HTTP response from server different
      *         than 20x codes
      */
     public ALMSettings getALMSettings(String key) throws ClientException {
-        String requestURI = UriTemplate.fromTemplate(serverURL + ALM_SETTINGS) //
-                .set(QUERY_PARAM_PRJ, key) //
-                .expand();
-        return process(new HttpGet(requestURI), ALMSettings.class);
+        String requestURI = ALM_SETTINGS.set(QUERY_PARAM_PRJ, key) //
+                .expand(serverURL);
+        return get(ALM_SETTINGS.getEndpoint(), requestURI, ALMSettings.class);
+    }
+
+    /**
+     * Gets ALM settings associate to each one of the given project keys.
+     * <p>
+     * Lookups are done concurrently, a project that fails does not abort the
+     * others and its error is reported in the result.
+     *
+     * @param keys sonar project keys
+     * @return the ALM settings of the projects
+     * @throws ClientException if the current thread is interrupted
+     */
+    public ALMBindings getALMSettings(Collection<String> keys) throws ClientException {
+        return getALMSettings(keys, (key, settings) -> {
+        }, (key, e) -> {
+        });
+    }
+
+    /**
+     * Gets ALM settings associate to each one of the given project keys.
+     * <p>
+     * The handlers are called in the caller thread as soon as each lookup
+     * completes, in completion order.
+     *
+     * @param keys sonar project keys
+     * @param onSettings notified of each ALM settings retrieved
+     * @param onFailure notified of each project whose ALM settings could not
+     *        be retrieved
+     * @return the ALM settings of the projects
+     * @throws ClientException if the current thread is interrupted
+     * @see #getALMSettings(Collection)
+     */
+    public ALMBindings getALMSettings(Collection<String> keys, BiConsumer<String, ALMSettings> onSettings, BiConsumer<String, ClientException> onFailure) throws ClientException {
+        ALMBindings result = new ALMBindings();
+        forEachConcurrently(keys, this::getALMSettings, (key, settings) -> {
+            result.add(key, settings);
+            onSettings.accept(key, settings);
+        }, (key, e) -> {
+            result.fail(key, e);
+            onFailure.accept(key, e);
+        });
+        return result;
     }
 
     /**
@@ -260,34 +1203,50 @@ public class SonarqubeServerClient implements Closeable {
      *         than 20x codes
      */
     public ALMSettings setALMSettings(String projectKey, String almName, String repository) throws ClientException {
-        String requestURI = UriTemplate.fromTemplate(serverURL + ALM_SETTINGS_BB) //
-                .set(QUERY_PARAM_PRJ, projectKey) //
+        String requestURI = ALM_SETTINGS_BB.set(QUERY_PARAM_PRJ, projectKey) //
                 .set(QUERY_PARAM_ALM_KEY, almName) //
                 .set(QUERY_PARAM_REPO_KEY, repository) //
-                .expand();
-        return process(new HttpGet(requestURI), ALMSettings.class);
+                .expand(serverURL);
+        if (skip(requestURI)) {
+            ALMSettings settings = new ALMSettings();
+            settings.setKey(almName);
+            settings.setRepository(repository);
+            return settings;
+        }
+        try {
+            return process(new HttpGet(requestURI), ALMSettings.class);
+        } finally {
+            invalidate(ALM_SETTINGS);
+        }
     }
 
     /**
      * Returns all project links of the given project.
-     * 
+     * <p>
+     * Concurrent identical requests are sent once, so the returned links are shared
+     * with the other callers and the response cache and must not be
+     * modified.
+     *
      * @param projectKey sonar project key
-     * @return list of project link
+     * @return an unmodifiable list of project link
      * @throws ClientException in case of HTTP response from server different
      *         than 20x codes
      */
     public List<ProjectLink> getProjectLinks(String projectKey) throws ClientException {
-        String requestURI = UriTemplate.fromTemplate(serverURL + PROJECT_LINKS) //
-                .set(QUERY_PARAM_PRJ_KEY, projectKey) //
-                .expand();
-        ProjectLinks result = process(new HttpGet(requestURI), ProjectLinks.class);
-        return result.getLinks();
+        String requestURI = PROJECT_LINKS.set(QUERY_PARAM_PRJ_KEY, projectKey) //
+                .expand(serverURL);
+        ProjectLinks result = get(PROJECT_LINKS.getEndpoint(), requestURI, ProjectLinks.class);
+        return readOnly(result.getLinks());
     }
 
     /**
      * Gets global web hooks.
-     * 
-     * @return all configured web hooks
+     * <p>
+     * Concurrent identical requests are sent once, so the returned web hooks are shared
+     * with the other callers and the response cache and must not be
+     * modified.
+     *
+     * @return an unmodifiable list of all configured web hooks
      * @throws ClientException in case of HTTP response from server different
      *         than 20x codes
      */
@@ -297,18 +1256,21 @@ public class SonarqubeServerClient implements Closeable {
 
     /**
      * Gets web hooks associated to the given project.
-     * 
+     * <p>
+     * Concurrent identical requests are sent once, so the returned web hooks are shared
+     * with the other callers and the response cache and must not be
+     * modified.
+     *
      * @param projectKey of the project to search for
-     * @return all configured web hooks
+     * @return an unmodifiable list of all configured web hooks
      * @throws ClientException in case of HTTP response from server different
      *         than 20x codes
      */
     public List<Webhook> getWebhooks(String projectKey) throws ClientException {
-        String requestURI = UriTemplate.fromTemplate(serverURL + WEBHOOK_GET) //
-                .set(QUERY_PARAM_PRJ, projectKey) //
-                .expand();
-        WebhookResponse result = process(new HttpGet(requestURI), WebhookResponse.class);
-        return result.getWebhooks();
+        String requestURI = WEBHOOK_GET.set(QUERY_PARAM_PRJ, projectKey) //
+                .expand(serverURL);
+        WebhookResponse result = get(WEBHOOK_GET.getEndpoint(), requestURI, WebhookResponse.class);
+        return readOnly(result.getWebhooks());
     }
 
     /**
@@ -321,14 +1283,20 @@ public class SonarqubeServerClient implements Closeable {
      *         than 20x codes
      */
     public Webhook addWebhook(String projectKey, Webhook webhook) throws ClientException {
-        String requestURI = UriTemplate.fromTemplate(serverURL + WEBHOOK_CREATE) //
-                .set(QUERY_PARAM_PRJ, projectKey) //
+        String requestURI = WEBHOOK_CREATE.set(QUERY_PARAM_PRJ, projectKey) //
                 .set(QUERY_PARAM_WEBHOOK_NAME, webhook.getName()) //
                 .set(QUERY_PARAM_WEBHOOK_URL, webhook.getURL()) //
                 .set(QUERY_PARAM_SECRET, webhook.getSecret()) //
-                .expand();
-        WebhookResponse result = process(new HttpPost(requestURI), WebhookResponse.class);
-        return result.getWebhook();
+                .expand(serverURL);
+        if (skip(requestURI)) {
+            return webhook;
+        }
+        try {
+            WebhookResponse result = process(new HttpPost(requestURI), WebhookResponse.class);
+            return result.getWebhook();
+        } finally {
+            invalidate(WEBHOOK_GET);
+        }
     }
 
     /**
@@ -351,52 +1319,281 @@ public class SonarqubeServerClient implements Closeable {
      *         than 20x codes
      */
     public void deleteWebhook(String webhookKey) throws ClientException {
-        String requestURI = UriTemplate.fromTemplate(serverURL + WEBHOOK_DELETE) //
-                .set(QUERY_PARAM_WEBHOOK_KEY, webhookKey) //
-                .expand();
-        process(new HttpPost(requestURI));
+        String requestURI = WEBHOOK_DELETE.set(QUERY_PARAM_WEBHOOK_KEY, webhookKey) //
+                .expand(serverURL);
+        if (skip(requestURI)) {
+            return;
+        }
+        try {
+            process(new HttpPost(requestURI));
+        } finally {
+            invalidate(WEBHOOK_GET);
+        }
     }
 
-    private void setupRequest(HttpUriRequest request) throws ClientException {
-        addHeader(request, HttpHeaders.ACCEPT, "application/json;charset=utf-8");
-        credentials.apply(request);
+    /*
+     * In dry run mode requests that modify the server are only logged,
+     * without the query that could contain secrets.
+     */
+    private boolean skip(String requestURI) {
+        if (dryRun) {
+            logger.info("Dry run, skip " + endpointName(requestURI));
+        }
+        return dryRun;
     }
 
-    private void addHeader(HttpUriRequest request, String key, String value) {
-        if (request.getFirstHeader(key) == null) {
-            request.addHeader(key, value);
+    /*
+     * Returns how the request has been authenticated.
+     */
+    private String setupRequest(HttpUriRequest request) throws ClientException {
+        if (!request.containsHeader(HttpHeaders.ACCEPT)) {
+            request.addHeader(ACCEPT_JSON);
         }
+        if (request instanceof Session.Login) {
+            // the credentials are already in the parameters
+            return RequestEvent.AUTHENTICATION_NONE;
+        }
+        Session current = session;
+        if (current != null) {
+            current.apply(request);
+            return RequestEvent.AUTHENTICATION_SESSION;
+        }
+        request.removeHeaders(HttpHeaders.COOKIE);
+        request.removeHeaders(Session.XSRF_HEADER);
+        credentials.apply(request);
+        return credentials instanceof UserPassword ? RequestEvent.AUTHENTICATION_BASIC : RequestEvent.AUTHENTICATION_TOKEN;
     }
 
+    /**
+     * Builds the default transport over a pool of connections configured by
+     * the pool settings, the previous one is closed. Nothing to do if the
+     * client has been created with its own transport.
+     */
     protected void buildClient() {
-        client = HttpClients.custom() //
-                .setRetryStrategy(new DefaultHttpRequestRetryStrategy(retry, TimeValue.ofSeconds(2))) //
-                .build();
+        if (poolSettings == null) {
+            return;
+        }
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (IOException e) {
+                logger.log(Level.FINE, "Fail to close transport", e);
+            }
+        }
+        transport = new HttpClientTransport(poolSettings);
+    }
+
+    /**
+     * Returns the transport used to send requests.
+     *
+     * @return the transport
+     */
+    public Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Returns the URL of the server this client connects to.
+     *
+     * @return the server URL
+     */
+    public String getServerURL() {
+        return serverURL;
+    }
+
+    /**
+     * Returns a snapshot of the connection pool usage.
+     *
+     * @return the number of leased, available and pending connections, all
+     *         zero if the transport does not use a connection pool
+     */
+    public PoolStats getPoolStats() {
+        Transport current = transport;
+        if (current instanceof HttpClientTransport) {
+            return ((HttpClientTransport) current).getPoolStats();
+        }
+        return new PoolStats(0, 0, 0, 0);
     }
 
     private void buildJSONConverter() {
         objectMapper = new ObjectMapper();
         objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        readerFor(Paging.class);
+        readerFor(Project.class);
     }
 
     @Override
     public void close() throws IOException {
-        client.close();
+        synchronized (this) {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        transport.close();
     }
 
     public int getRetry() {
-        return retry;
+        return retryPolicy.getMaxRetries();
     }
 
+    /**
+     * Sets the maximum number of retries of the current retry policy.
+     *
+     * @param retry max retries, 0 disables retries
+     * @see #setRetryPolicy(RetryPolicy)
+     */
     public void setRetry(int retry) {
-        this.retry = retry;
-        buildClient();
+        retryPolicy.setMaxRetries(retry);
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Sets how failed requests are retried. Read requests are retried on
+     * I/O errors and on 429, 502, 503 and 504 responses; requests that
+     * modify the server, like {@link #addWebhook(Webhook)}, only when they
+     * never reached the server or the server rejected them with 429 or 503.
+     * <p>
+     * The policy can be changed at any time, it applies to the next retry.
+     *
+     * @param retryPolicy the retry policy
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = Objects.requireNonNull(retryPolicy);
+    }
+
+    public ResponseCache getResponseCache() {
+        return cache;
+    }
+
+    /**
+     * Sets the cache used for the responses of {@link #getProject(String)},
+     * {@link #getALMSettings(String)}, {@link #getProjectLinks(String)} and
+     * {@link #getWebhooks(String)}.
+     * <p>
+     * Cached objects are shared between callers and must not be modified.
+     *
+     * @param cache the response cache, {@code null} to disable caching
+     */
+    public void setResponseCache(ResponseCache cache) {
+        this.cache = cache;
+    }
+
+    public MetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * Sets the listener that receives the measurements of every request.
+     *
+     * @param metricsListener the listener, {@code null} to disable the
+     *        measurements
+     * @see com.github.nfalco79.sonarqube.client.metrics.InMemoryMetrics
+     */
+    public void setMetricsListener(MetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return limiter;
+    }
+
+    /**
+     * Sets the limiter shared by all requests of this client. By default an
+     * {@link AIMDLimiter} bounded by
+     * {@link ConnectionPoolSettings#getMaxPerRoute()} adapts the number of
+     * concurrent requests to the server latency and to 429/503 responses.
+     *
+     * @param limiter the concurrency limiter, {@code null} to send requests
+     *        as soon as a connection is available
+     */
+    public void setConcurrencyLimiter(ConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Sets the circuit breaker that stops sending requests while the server
+     * is failing, by default there is none.
+     *
+     * @param circuitBreaker the circuit breaker, {@code null} to always send
+     *        requests
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the maximum number of concurrent requests used to fetch the pages
+     * of a paginated resource and to perform bulk operations. Not used when
+     * the work runs on virtual threads.
+     *
+     * @param parallelism number of pages requested at the same time
+     * @see #setVirtualThreads(boolean)
+     */
+    public synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be greater than zero");
+        }
+        this.parallelism = parallelism;
+        if (executor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            if (parallelism > pool.getMaximumPoolSize()) {
+                pool.setMaximumPoolSize(parallelism);
+                pool.setCorePoolSize(parallelism);
+            } else {
+                pool.setCorePoolSize(parallelism);
+                pool.setMaximumPoolSize(parallelism);
+            }
+        }
+    }
+
+    public synchronized boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Sets if pagination fan-out and bulk operations run on a virtual thread
+     * per task instead of a pool of {@link #getParallelism()} threads. The
+     * number of requests sent at the same time is then bounded only by the
+     * concurrency limiter and the connection pool.
+     * <p>
+     * Enabled by default on Java 21 and later, ignored on previous versions.
+     *
+     * @param virtualThreads {@code true} to use virtual threads when
+     *        available
+     */
+    public synchronized void setVirtualThreads(boolean virtualThreads) {
+        boolean enabled = virtualThreads && Workers.isVirtualThreadSupported();
+        if (enabled != this.virtualThreads) {
+            // not shut down, tasks may still be submitted by running bulk
+            // operations and the idle pool threads time out anyway
+            executor = null;
+        }
+        this.virtualThreads = enabled;
     }
 
     public boolean isDryRun() {
         return dryRun;
     }
 
+    /**
+     * When enabled {@link #addWebhook(String, Webhook)},
+     * {@link #deleteWebhook(String)} and
+     * {@link #setALMSettings(String, String, String)} do not send any request
+     * to the server, they log it and return what was given.
+     *
+     * @param dryRun {@code true} to not modify the server
+     */
     public void setDryRun(boolean dryRun) {
         this.dryRun = dryRun;
     }
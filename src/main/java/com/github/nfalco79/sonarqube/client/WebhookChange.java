@@ -0,0 +1,87 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import com.github.nfalco79.sonarqube.client.model.Webhook;
+
+/**
+ * A web hook to create or delete to reach the desired configuration.
+ *
+ * @author Nikolas Falco
+ * @see WebhookReconciler
+ */
+public class WebhookChange {
+
+    public enum Action {
+        CREATE, DELETE
+    }
+
+    private final Action action;
+    private final String projectKey;
+    private final Webhook webhook;
+
+    /* package */ WebhookChange(Action action, String projectKey, Webhook webhook) {
+        this.action = action;
+        this.projectKey = projectKey;
+        this.webhook = webhook;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    /**
+     * The project that owns the web hook.
+     *
+     * @return the project key, {@code null} for a global web hook
+     */
+    public String getProjectKey() {
+        return projectKey;
+    }
+
+    /**
+     * The web hook to create, or the existing one to delete.
+     *
+     * @return the web hook
+     */
+    public Webhook getWebhook() {
+        return webhook;
+    }
+
+    @Override
+    public String toString() {
+        return action + " " + (projectKey != null ? projectKey : "<global>") + " " + webhook.getName() + " -> " + redact(webhook.getURL());
+    }
+
+    /*
+     * Web hook URLs often carry credentials in the user info or tokens in
+     * the query, they are not printed.
+     */
+    private static String redact(String url) {
+        if (url == null) {
+            return null;
+        }
+        try {
+            URI uri = new URI(url);
+            return new URI(uri.getScheme(), null, uri.getHost(), uri.getPort(), uri.getPath(), null, null).toString();
+        } catch (URISyntaxException e) {
+            return "<invalid URL>";
+        }
+    }
+}
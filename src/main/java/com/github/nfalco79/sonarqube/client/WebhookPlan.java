@@ -0,0 +1,125 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.nfalco79.sonarqube.client.WebhookChange.Action;
+import com.github.nfalco79.sonarqube.client.model.Webhook;
+
+/**
+ * The changes needed to bring the web hooks of the server to the desired
+ * configuration, and the outcome of their application.
+ *
+ * @author Nikolas Falco
+ * @see WebhookReconciler
+ */
+public class WebhookPlan {
+
+    private final List<WebhookChange> deletes = new ArrayList<>();
+    private final List<WebhookChange> creates = new ArrayList<>();
+    private final Map<String, ClientException> readFailures = new LinkedHashMap<>();
+    private final List<WebhookChange> applied = new ArrayList<>();
+    private final Map<WebhookChange, ClientException> failures = new LinkedHashMap<>();
+
+    /* package */ void delete(String projectKey, Webhook webhook) {
+        deletes.add(new WebhookChange(Action.DELETE, projectKey, webhook));
+    }
+
+    /* package */ void create(String projectKey, Webhook webhook) {
+        creates.add(new WebhookChange(Action.CREATE, projectKey, webhook));
+    }
+
+    /* package */ void failRead(String projectKey, ClientException error) {
+        readFailures.put(projectKey, error);
+    }
+
+    /* package */ void applied(WebhookChange change) {
+        applied.add(change);
+    }
+
+    /* package */ void fail(WebhookChange change, ClientException error) {
+        failures.put(change, error);
+    }
+
+    /**
+     * Returns all the changes, deletions first.
+     *
+     * @return the planned changes
+     */
+    public List<WebhookChange> getChanges() {
+        List<WebhookChange> changes = new ArrayList<>(deletes);
+        changes.addAll(creates);
+        return changes;
+    }
+
+    public List<WebhookChange> getDeletes() {
+        return Collections.unmodifiableList(deletes);
+    }
+
+    public List<WebhookChange> getCreates() {
+        return Collections.unmodifiableList(creates);
+    }
+
+    /**
+     * Returns if the server already matches the desired configuration.
+     *
+     * @return {@code true} if there is nothing to change
+     */
+    public boolean isEmpty() {
+        return deletes.isEmpty() && creates.isEmpty();
+    }
+
+    /**
+     * Returns the error for each project whose web hooks could not be read,
+     * these projects are left untouched.
+     *
+     * @return a map of errors by project key, the global web hooks have a
+     *         {@code null} key
+     */
+    public Map<String, ClientException> getReadFailures() {
+        return Collections.unmodifiableMap(readFailures);
+    }
+
+    /**
+     * Returns the changes applied with success to the server.
+     *
+     * @return the applied changes
+     */
+    public List<WebhookChange> getApplied() {
+        return Collections.unmodifiableList(applied);
+    }
+
+    /**
+     * Returns the error for each change that could not be applied.
+     *
+     * @return a map of errors by change
+     */
+    public Map<WebhookChange, ClientException> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        getChanges().forEach(change -> sb.append(change).append('\n'));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.github.nfalco79.sonarqube.client.model.Webhook;
+
+/**
+ * Brings the web hooks of a Sonarqube server to a desired configuration.
+ * <p>
+ * Only the global web hooks, if declared, and the web hooks of the declared
+ * projects are managed. Web hooks are matched by name and URL: the existing
+ * ones not desired are deleted, the desired ones missing are created. The
+ * secret is not returned by the server, so changing only the secret of a
+ * web hook is not detected.
+ * <p>
+ * Current web hooks are read and changes are applied concurrently on the
+ * client worker pool. When the client is in dry run mode
+ * {@link #apply(WebhookPlan)} sends no request.
+ *
+ * <pre>
+ * WebhookPlan plan = new WebhookReconciler(client) //
+ *         .project("com.acme:mail", webhooks) //
+ *         .plan();
+ * </pre>
+ *
+ * @author Nikolas Falco
+ */
+public class WebhookReconciler {
+
+    private final Logger logger = Logger.getLogger(WebhookReconciler.class.getName());
+
+    private final SonarqubeServerClient client;
+    private final Map<String, List<Webhook>> desired = new LinkedHashMap<>();
+
+    public WebhookReconciler(SonarqubeServerClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Declares the global web hooks.
+     *
+     * @param webhooks the desired global web hooks, empty to remove all
+     * @return this reconciler
+     */
+    public WebhookReconciler global(Collection<Webhook> webhooks) {
+        desired.put(null, new ArrayList<>(webhooks));
+        return this;
+    }
+
+    /**
+     * Declares the web hooks of a project.
+     *
+     * @param projectKey the project key
+     * @param webhooks the desired web hooks, empty to remove all
+     * @return this reconciler
+     */
+    public WebhookReconciler project(String projectKey, Collection<Webhook> webhooks) {
+        if (projectKey == null) {
+            throw new IllegalArgumentException("projectKey is required");
+        }
+        desired.put(projectKey, new ArrayList<>(webhooks));
+        return this;
+    }
+
+    /**
+     * Reads the current web hooks and computes the changes.
+     *
+     * @return the plan
+     * @throws ClientException if the current thread is interrupted
+     */
+    public WebhookPlan plan() throws ClientException {
+        Map<String, List<Webhook>> current = new HashMap<>();
+        Map<String, ClientException> failures = new HashMap<>();
+        client.forEachConcurrently(desired.keySet(), client::getWebhooks, current::put, failures::put);
+
+        // responses arrive in completion order, the plan follows the declarations
+        WebhookPlan plan = new WebhookPlan();
+        for (String projectKey : desired.keySet()) {
+            if (current.containsKey(projectKey)) {
+                diff(plan, projectKey, current.get(projectKey));
+            } else {
+                plan.failRead(projectKey, failures.get(projectKey));
+            }
+        }
+        return plan;
+    }
+
+    private void diff(WebhookPlan plan, String projectKey, List<Webhook> current) {
+        Map<String, Webhook> missing = new LinkedHashMap<>();
+        for (Webhook webhook : desired.get(projectKey)) {
+            missing.put(identity(webhook), webhook);
+        }
+        for (Webhook webhook : current) {
+            if (missing.remove(identity(webhook)) == null) {
+                plan.delete(projectKey, webhook);
+            }
+        }
+        missing.values().forEach(webhook -> plan.create(projectKey, webhook));
+    }
+
+    private static String identity(Webhook webhook) {
+        return webhook.getName() + '\n' + webhook.getURL();
+    }
+
+    /**
+     * Applies the planned changes, deletions first so that projects do not
+     * exceed the maximum number of web hooks.
+     *
+     * @param plan the changes to apply
+     * @return the given plan with the outcome of each change
+     * @throws ClientException if the current thread is interrupted
+     */
+    public WebhookPlan apply(WebhookPlan plan) throws ClientException {
+        if (client.isDryRun()) {
+            if (logger.isLoggable(Level.INFO)) {
+                logger.info("Dry run, skip " + plan.getDeletes().size() + " web hook deletions and " + plan.getCreates().size() + " creations");
+            }
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine("Skipped web hook changes:\n" + plan);
+            }
+            return plan;
+        }
+        client.forEachConcurrently(plan.getDeletes(), change -> {
+            client.deleteWebhook(change.getWebhook().getKey());
+            return change;
+        }, (change, result) -> plan.applied(change), plan::fail);
+        client.forEachConcurrently(plan.getCreates(), change -> client.addWebhook(change.getProjectKey(), change.getWebhook()), //
+                (change, created) -> plan.applied(change), plan::fail);
+        return plan;
+    }
+
+    /**
+     * Computes and applies the changes.
+     *
+     * @return the applied plan
+     * @throws ClientException if the current thread is interrupted
+     */
+    public WebhookPlan reconcile() throws ClientException {
+        return apply(plan());
+    }
+}
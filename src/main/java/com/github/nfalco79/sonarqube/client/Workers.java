@@ -0,0 +1,52 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Threads available to run the concurrent requests of a client.
+ * <p>
+ * This implementation is used up to Java 20 where virtual threads are not
+ * available. The multi-release jar contains a Java 21 version of this class
+ * in {@code META-INF/versions/21}.
+ *
+ * @author Nikolas Falco
+ */
+/* package */ final class Workers {
+
+    private Workers() {
+    }
+
+    /**
+     * Whether the running JVM supports virtual threads.
+     *
+     * @return {@code false}
+     */
+    /* package */ static boolean isVirtualThreadSupported() {
+        return false;
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for each task.
+     *
+     * @param prefix of the thread names
+     * @return {@code null}, virtual threads are not supported
+     */
+    /* package */ static ExecutorService newVirtualThreadExecutor(String prefix) {
+        return null;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client.cache;
+
+import java.time.Duration;
+
+import com.github.nfalco79.sonarqube.client.ClientException;
+
+/**
+ * A cached response, it could be a value or an error (negative caching).
+ *
+ * @author Nikolas Falco
+ */
+public final class CacheEntry {
+
+    private final Object value;
+    private final int errorStatus;
+    private final String errorResponse;
+    private final String etag;
+    private final long expiresAt;
+
+    private CacheEntry(Object value, int errorStatus, String errorResponse, String etag, Duration timeToLive) {
+        this.value = value;
+        this.errorStatus = errorStatus;
+        this.errorResponse = errorResponse;
+        this.etag = etag;
+        this.expiresAt = System.nanoTime() + timeToLive.toNanos();
+    }
+
+    /**
+     * Creates an entry for a successful response.
+     *
+     * @param value the deserialised response
+     * @param etag the entity tag returned by the server, may be {@code null}
+     * @param timeToLive how long the entry is fresh
+     * @return a new cache entry
+     */
+    public static CacheEntry of(Object value, String etag, Duration timeToLive) {
+        return new CacheEntry(value, 0, null, etag, timeToLive);
+    }
+
+    /**
+     * Creates an entry for an error response, typically a 404. Only the
+     * status and the body of the response are kept, each hit throws a new
+     * exception.
+     *
+     * @param error the exception raised by the request
+     * @param timeToLive how long the entry is fresh
+     * @return a new cache entry
+     */
+    public static CacheEntry error(ClientException error, Duration timeToLive) {
+        return new CacheEntry(null, error.getStatus(), error.getResponse(), null, timeToLive);
+    }
+
+    /**
+     * Returns a copy of this entry fresh for the given period, used when the
+     * server confirms that the entry is not modified.
+     *
+     * @param timeToLive how long the entry is fresh
+     * @return a new cache entry
+     */
+    public CacheEntry renew(Duration timeToLive) {
+        return new CacheEntry(value, errorStatus, errorResponse, etag, timeToLive);
+    }
+
+    /**
+     * Returns the cached value or throws the cached error.
+     *
+     * @param <T> the value type
+     * @return the cached value
+     * @throws ClientException a new exception for the cached error
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getValue() throws ClientException {
+        if (errorStatus != 0) {
+            throw new ClientException(errorStatus, errorResponse);
+        }
+        return (T) value;
+    }
+
+    public String getETag() {
+        return etag;
+    }
+
+    public boolean isExpired() {
+        return System.nanoTime() - expiresAt >= 0;
+    }
+
+}
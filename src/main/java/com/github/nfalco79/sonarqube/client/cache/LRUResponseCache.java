@@ -0,0 +1,89 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client.cache;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * In memory {@link ResponseCache} that holds a bounded number of entries
+ * and evicts the least recently used.
+ *
+ * @author Nikolas Falco
+ */
+public class LRUResponseCache implements ResponseCache {
+
+    private final Map<String, CacheEntry> entries;
+    private final Map<String, Duration> timeToLives = new ConcurrentHashMap<>();
+    private final Duration defaultTimeToLive;
+
+    /**
+     * Default constructor.
+     *
+     * @param maxEntries the maximum number of cached responses
+     * @param defaultTimeToLive how long a response is fresh if the endpoint
+     *        has not a specific time to live
+     */
+    @SuppressWarnings("serial")
+    public LRUResponseCache(int maxEntries, Duration defaultTimeToLive) {
+        this.defaultTimeToLive = defaultTimeToLive;
+        this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Sets how long the responses of the given endpoint are fresh.
+     *
+     * @param endpoint logical name of the endpoint, for example
+     *        {@code webhooks.list}
+     * @param timeToLive the time to live, zero to not cache the endpoint
+     */
+    public void setTimeToLive(String endpoint, Duration timeToLive) {
+        timeToLives.put(endpoint, timeToLive);
+    }
+
+    @Override
+    public Duration getTimeToLive(String endpoint) {
+        return timeToLives.getOrDefault(endpoint, defaultTimeToLive);
+    }
+
+    @Override
+    public synchronized CacheEntry get(String key) {
+        return entries.get(key);
+    }
+
+    @Override
+    public synchronized void put(String key, CacheEntry entry) {
+        entries.put(key, entry);
+    }
+
+    @Override
+    public synchronized void invalidate(Predicate<String> keys) {
+        entries.keySet().removeIf(keys);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client.cache;
+
+import java.time.Duration;
+import java.util.function.Predicate;
+
+/**
+ * Cache of the responses of read only requests done by
+ * {@link com.github.nfalco79.sonarqube.client.SonarqubeServerClient}.
+ * <p>
+ * Entries are keyed by the request URI. Implementations must be thread
+ * safe.
+ *
+ * @author Nikolas Falco
+ */
+public interface ResponseCache {
+
+    /**
+     * Returns the entry cached for the given key, also if expired so that it
+     * can be revalidated.
+     *
+     * @param key the request URI
+     * @return the cached entry or {@code null}
+     */
+    CacheEntry get(String key);
+
+    /**
+     * Stores the entry for the given key.
+     *
+     * @param key the request URI
+     * @param entry to cache
+     */
+    void put(String key, CacheEntry entry);
+
+    /**
+     * Removes all entries whose key matches the given predicate.
+     *
+     * @param keys predicate on the request URI
+     */
+    void invalidate(Predicate<String> keys);
+
+    /**
+     * How long a response of the given endpoint is considered fresh.
+     *
+     * @param endpoint logical name of the endpoint, for example
+     *        {@code alm_settings.get_binding}
+     * @return the time to live, {@code null} or zero to not cache the
+     *         endpoint
+     */
+    Duration getTimeToLive(String endpoint);
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client.index;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Column of strings stored one after the other in a single char array.
+ * <p>
+ * Compared to an array of {@link String} it saves the object header, the
+ * hash and the array header of each value.
+ *
+ * @author Nikolas Falco
+ */
+/* package */ final class CharColumn {
+
+    private final char[] chars;
+    private final int[] offsets;
+    private final BitSet nulls;
+
+    private CharColumn(char[] chars, int[] offsets, BitSet nulls) {
+        this.chars = chars;
+        this.offsets = offsets;
+        this.nulls = nulls;
+    }
+
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    public String get(int row) {
+        if (nulls.get(row)) {
+            return null;
+        }
+        return new String(chars, offsets[row], offsets[row + 1] - offsets[row]);
+    }
+
+    /**
+     * Compares the value at the given row with the given string following
+     * the {@link String#compareTo(String)} order, a {@code null} value is
+     * lower than any string.
+     *
+     * @param row the row
+     * @param value the string to compare
+     * @return a negative number, zero or a positive number if the row value
+     *         is lower, equal or greater than the string
+     */
+    public int compare(int row, String value) {
+        if (nulls.get(row)) {
+            return -1;
+        }
+        int start = offsets[row];
+        int length = offsets[row + 1] - start;
+        int common = Math.min(length, value.length());
+        for (int i = 0; i < common; i++) {
+            int diff = chars[start + i] - value.charAt(i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - value.length();
+    }
+
+    public int compare(int row, int otherRow) {
+        if (nulls.get(row) || nulls.get(otherRow)) {
+            return Boolean.compare(!nulls.get(row), !nulls.get(otherRow));
+        }
+        int start = offsets[row];
+        int length = offsets[row + 1] - start;
+        int otherStart = offsets[otherRow];
+        int otherLength = offsets[otherRow + 1] - otherStart;
+        int common = Math.min(length, otherLength);
+        for (int i = 0; i < common; i++) {
+            int diff = chars[start + i] - chars[otherStart + i];
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - otherLength;
+    }
+
+    public boolean startsWith(int row, String prefix) {
+        int start = offsets[row];
+        if (nulls.get(row) || offsets[row + 1] - start < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (chars[start + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tests if the value at the given row contains the given text ignoring
+     * the case.
+     *
+     * @param row the row
+     * @param lowerCase the text to search, already in lower case
+     * @return {@code true} if the value contains the text
+     */
+    public boolean containsIgnoreCase(int row, char[] lowerCase) {
+        if (nulls.get(row)) {
+            return false;
+        }
+        int last = offsets[row + 1] - lowerCase.length;
+        for (int start = offsets[row]; start <= last; start++) {
+            int i = 0;
+            while (i < lowerCase.length && Character.toLowerCase(chars[start + i]) == lowerCase[i]) {
+                i++;
+            }
+            if (i == lowerCase.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a copy of this column with the rows in the given order.
+     *
+     * @param order the row of this column for each row of the new column
+     * @return the reordered column
+     */
+    public CharColumn reorder(int[] order) {
+        Builder builder = new Builder(chars.length, order.length);
+        for (int row : order) {
+            if (nulls.get(row)) {
+                builder.add(null);
+            } else {
+                builder.add(chars, offsets[row], offsets[row + 1] - offsets[row]);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Estimated memory used by this column in bytes.
+     *
+     * @return the number of bytes
+     */
+    public long getMemoryUsage() {
+        return 16L + chars.length * 2L + 16L + offsets.length * 4L + nulls.size() / 8;
+    }
+
+    /* package */ static final class Builder {
+        private char[] chars;
+        private int[] offsets;
+        private int size;
+        private final BitSet nulls = new BitSet();
+
+        /* package */ Builder() {
+            this(1024, 64);
+        }
+
+        private Builder(int chars, int rows) {
+            this.chars = new char[Math.max(chars, 16)];
+            this.offsets = new int[Math.max(rows, 16) + 1];
+        }
+
+        public void add(String value) {
+            if (value == null) {
+                nulls.set(size);
+                append(0);
+            } else {
+                ensureChars(value.length());
+                value.getChars(0, value.length(), chars, offsets[size]);
+                append(value.length());
+            }
+        }
+
+        private void add(char[] source, int start, int length) {
+            ensureChars(length);
+            System.arraycopy(source, start, chars, offsets[size], length);
+            append(length);
+        }
+
+        private void ensureChars(int length) {
+            int required = offsets[size] + length;
+            if (required > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(required, chars.length * 2));
+            }
+        }
+
+        private void append(int length) {
+            if (size + 2 > offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[size + 1] = offsets[size] + length;
+            size++;
+        }
+
+        public CharColumn build() {
+            return new CharColumn(Arrays.copyOf(chars, offsets[size]), Arrays.copyOf(offsets, size + 1), (BitSet) nulls.clone());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column of strings with few distinct values, each row stores one byte with
+ * the position of its value in a dictionary.
+ *
+ * @author Nikolas Falco
+ */
+/* package */ final class DictionaryColumn {
+
+    // code zero is reserved to null
+    private static final int MAX_VALUES = 255;
+
+    private final String[] dictionary;
+    private final byte[] codes;
+
+    private DictionaryColumn(String[] dictionary, byte[] codes) {
+        this.dictionary = dictionary;
+        this.codes = codes;
+    }
+
+    public String get(int row) {
+        int code = codes[row] & 0xFF;
+        return code != 0 ? dictionary[code - 1] : null;
+    }
+
+    public DictionaryColumn reorder(int[] order) {
+        byte[] result = new byte[order.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = codes[order[i]];
+        }
+        return new DictionaryColumn(dictionary, result);
+    }
+
+    public long getMemoryUsage() {
+        return 16L + codes.length;
+    }
+
+    /* package */ static final class Builder {
+        private final Map<String, Integer> values = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+        private byte[] codes = new byte[64];
+        private int size;
+
+        public void add(String value) {
+            int code = 0;
+            if (value != null) {
+                code = values.computeIfAbsent(value, v -> {
+                    if (dictionary.size() == MAX_VALUES) {
+                        throw new IllegalArgumentException("More than " + MAX_VALUES + " distinct values");
+                    }
+                    dictionary.add(v);
+                    return dictionary.size();
+                });
+            }
+            if (size == codes.length) {
+                codes = Arrays.copyOf(codes, size * 2);
+            }
+            codes[size++] = (byte) code;
+        }
+
+        public DictionaryColumn build() {
+            return new DictionaryColumn(dictionary.toArray(new String[0]), Arrays.copyOf(codes, size));
+        }
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.github.nfalco79.sonarqube.client.ProjectInventory;
+import com.github.nfalco79.sonarqube.client.model.ALMSettings;
+import com.github.nfalco79.sonarqube.client.model.Project;
+import com.github.nfalco79.sonarqube.client.model.ProjectLink;
+
+/**
+ * Immutable in-memory index of projects for local lookups.
+ * <p>
+ * Projects are stored by column and sorted by key: keys, names and
+ * revisions are packed in char arrays, qualifiers and visibilities are
+ * dictionary encoded in one byte per project and analysis dates are kept
+ * in a long array. Project objects are created only for the results of a
+ * lookup. Reverse indexes map ALM repositories and link URLs to the keys
+ * of their projects.
+ * <p>
+ * An index is thread safe. It is built once, for example while projects
+ * are streamed from the server:
+ *
+ * <pre>
+ * ProjectIndex.Builder builder = ProjectIndex.builder();
+ * client.forEachProject(null, builder::add);
+ * ProjectIndex index = builder.build();
+ * </pre>
+ *
+ * @author Nikolas Falco
+ */
+public final class ProjectIndex {
+
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private final CharColumn keys;
+    private final CharColumn names;
+    private final DictionaryColumn qualifiers;
+    private final DictionaryColumn visibilities;
+    private final long[] analyses;
+    private final CharColumn revisions;
+    private final Map<String, int[]> byRepository;
+    private final Map<String, int[]> byLink;
+
+    private ProjectIndex(CharColumn keys, CharColumn names, DictionaryColumn qualifiers, DictionaryColumn visibilities, long[] analyses, CharColumn revisions, Map<String, int[]> byRepository, Map<String, int[]> byLink) {
+        this.keys = keys;
+        this.names = names;
+        this.qualifiers = qualifiers;
+        this.visibilities = visibilities;
+        this.analyses = analyses;
+        this.revisions = revisions;
+        this.byRepository = byRepository;
+        this.byLink = byLink;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builds the index of all projects, links and ALM bindings of the given
+     * inventory.
+     *
+     * @param inventory the project inventory
+     * @return the project index
+     */
+    public static ProjectIndex of(ProjectInventory inventory) {
+        Builder builder = new Builder();
+        for (Project project : inventory.getProjects()) {
+            builder.add(project);
+            builder.addLinks(project.getKey(), inventory.getLinks(project.getKey()));
+            builder.addALMSettings(project.getKey(), inventory.getALMSettings(project.getKey()));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the number of indexed projects.
+     *
+     * @return the number of projects
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * Returns the project with the given key.
+     *
+     * @param key the project key
+     * @return the project, {@code null} if not indexed
+     */
+    public Project get(String key) {
+        int row = lowerBound(key);
+        return row < size() && keys.compare(row, key) == 0 ? project(row) : null;
+    }
+
+    /**
+     * Returns the projects whose key starts with the given prefix, sorted by
+     * key.
+     *
+     * @param prefix the key prefix, case sensitive
+     * @return the matching projects
+     */
+    public List<Project> searchByKeyPrefix(String prefix) {
+        List<Project> result = new ArrayList<>();
+        for (int row = lowerBound(prefix); row < size() && keys.startsWith(row, prefix); row++) {
+            result.add(project(row));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the projects whose key or name contains the given text
+     * ignoring the case, like the {@code q} parameter of the search on the
+     * server.
+     *
+     * @param query the text to search
+     * @return the matching projects sorted by key
+     */
+    public List<Project> search(String query) {
+        char[] needle = query.toLowerCase(Locale.ENGLISH).toCharArray();
+        List<Project> result = new ArrayList<>();
+        for (int row = 0; row < size(); row++) {
+            if (keys.containsIgnoreCase(row, needle) || names.containsIgnoreCase(row, needle)) {
+                result.add(project(row));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the keys of the projects bound to the given ALM repository.
+     *
+     * @param repository the ALM repository
+     * @return the project keys sorted, empty if no project is bound
+     */
+    public List<String> getProjectsByRepository(String repository) {
+        return keysOf(byRepository.get(repository));
+    }
+
+    /**
+     * Returns the keys of the projects that have a link with the given URL.
+     *
+     * @param url the link URL
+     * @return the project keys sorted, empty if no project has the link
+     */
+    public List<String> getProjectsByLink(String url) {
+        return keysOf(byLink.get(url));
+    }
+
+    private List<String> keysOf(int[] rows) {
+        if (rows == null) {
+            return Collections.emptyList();
+        }
+        List<String> result = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            result.add(keys.get(row));
+        }
+        return result;
+    }
+
+    /**
+     * Estimated memory used by the project columns, excluding the reverse
+     * indexes.
+     *
+     * @return the number of bytes
+     */
+    public long getMemoryUsage() {
+        return keys.getMemoryUsage() + names.getMemoryUsage() + qualifiers.getMemoryUsage() + visibilities.getMemoryUsage() //
+                + 16L + analyses.length * 8L + revisions.getMemoryUsage();
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys.compare(mid, key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private Project project(int row) {
+        Project project = new Project();
+        project.setKey(keys.get(row));
+        project.setName(names.get(row));
+        project.setQualifier(qualifiers.get(row));
+        project.setVisibility(visibilities.get(row));
+        project.setLastAnalysisDate(analyses[row] != NO_DATE ? new Date(analyses[row]) : null);
+        project.setRevision(revisions.get(row));
+        return project;
+    }
+
+    /**
+     * Collects the projects of an index, a project added twice is indexed
+     * once.
+     */
+    public static final class Builder {
+        private final CharColumn.Builder keys = new CharColumn.Builder();
+        private final CharColumn.Builder names = new CharColumn.Builder();
+        private final DictionaryColumn.Builder qualifiers = new DictionaryColumn.Builder();
+        private final DictionaryColumn.Builder visibilities = new DictionaryColumn.Builder();
+        private long[] analyses = new long[64];
+        private final CharColumn.Builder revisions = new CharColumn.Builder();
+        private int size;
+        private final Map<String, List<String>> repositories = new HashMap<>();
+        private final Map<String, List<String>> links = new HashMap<>();
+
+        private Builder() {
+        }
+
+        public Builder add(Project project) {
+            if (project.getKey() == null) {
+                throw new IllegalArgumentException("Project without key");
+            }
+            keys.add(project.getKey());
+            names.add(project.getName());
+            qualifiers.add(project.getQualifier());
+            visibilities.add(project.getVisibility());
+            if (size == analyses.length) {
+                analyses = Arrays.copyOf(analyses, size * 2);
+            }
+            Date analysis = project.getLastAnalysisDate();
+            analyses[size++] = analysis != null ? analysis.getTime() : NO_DATE;
+            revisions.add(project.getRevision());
+            return this;
+        }
+
+        public Builder addAll(Collection<Project> projects) {
+            projects.forEach(this::add);
+            return this;
+        }
+
+        public Builder addLinks(String projectKey, Collection<ProjectLink> projectLinks) {
+            for (ProjectLink link : projectLinks) {
+                if (link.getUrl() != null) {
+                    links.computeIfAbsent(link.getUrl(), url -> new ArrayList<>(1)).add(projectKey);
+                }
+            }
+            return this;
+        }
+
+        public Builder addALMSettings(String projectKey, ALMSettings settings) {
+            if (settings != null && settings.getRepository() != null) {
+                repositories.computeIfAbsent(settings.getRepository(), repository -> new ArrayList<>(1)).add(projectKey);
+            }
+            return this;
+        }
+
+        public ProjectIndex build() {
+            CharColumn unsorted = keys.build();
+            Integer[] rows = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                rows[i] = i;
+            }
+            // stable sort, the first one of duplicated keys wins
+            Arrays.sort(rows, unsorted::compare);
+            int[] order = new int[size];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (count == 0 || unsorted.compare(order[count - 1], rows[i]) != 0) {
+                    order[count++] = rows[i];
+                }
+            }
+            order = Arrays.copyOf(order, count);
+
+            long[] sortedAnalyses = new long[count];
+            for (int i = 0; i < count; i++) {
+                sortedAnalyses[i] = analyses[order[i]];
+            }
+            ProjectIndex index = new ProjectIndex(unsorted.reorder(order), names.build().reorder(order), //
+                    qualifiers.build().reorder(order), visibilities.build().reorder(order), //
+                    sortedAnalyses, revisions.build().reorder(order), new HashMap<>(), new HashMap<>());
+            reverse(index, repositories, index.byRepository);
+            reverse(index, links, index.byLink);
+            return index;
+        }
+
+        private static void reverse(ProjectIndex index, Map<String, List<String>> source, Map<String, int[]> target) {
+            for (Map.Entry<String, List<String>> entry : source.entrySet()) {
+                int[] rows = entry.getValue().stream() //
+                        .mapToInt(key -> {
+                            int row = index.lowerBound(key);
+                            return row < index.size() && index.keys.compare(row, key) == 0 ? row : -1;
+                        }) //
+                        .filter(row -> row != -1) //
+                        .sorted() //
+                        .distinct() //
+                        .toArray();
+                if (rows.length > 0) {
+                    target.put(entry.getKey(), rows);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client.internal.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.github.nfalco79.sonarqube.client.internal.rest.PaginatedResponse.Paging;
+
+/**
+ * Reads a paginated response token by token, each element of the
+ * {@code components} array is bound and handed to the sink as soon as it is
+ * parsed, so only one element at time is kept in memory.
+ * <p>
+ * An instance reads one page. When the page is read again, because the
+ * request is retried after the connection dropped in the middle of the body,
+ * the elements already handed to the sink are skipped.
+ *
+ * @param <T> the component type
+ */
+public class ComponentsReader<T> implements ResponseReader<Paging> {
+
+    private static final String FIELD_PAGING = "paging";
+    private static final String FIELD_COMPONENTS = "components";
+
+    private final ObjectReader pagingReader;
+    private final ObjectReader componentReader;
+    private final Consumer<? super T> sink;
+    private int delivered;
+
+    public ComponentsReader(ObjectReader pagingReader, ObjectReader componentReader, Consumer<? super T> sink) {
+        this.pagingReader = pagingReader;
+        this.componentReader = componentReader;
+        this.sink = sink;
+    }
+
+    @Override
+    public Paging read(InputStream content) throws IOException {
+        Paging paging = null;
+        int index = 0;
+        try (JsonParser parser = componentReader.createParser(content)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (FIELD_COMPONENTS.equals(field) && token == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        if (index++ < delivered) {
+                            parser.skipChildren();
+                            continue;
+                        }
+                        T component = componentReader.readValue(parser);
+                        sink.accept(component);
+                        delivered++;
+                    }
+                } else if (FIELD_PAGING.equals(field) && token == JsonToken.START_OBJECT) {
+                    paging = pagingReader.readValue(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return paging;
+    }
+
+}
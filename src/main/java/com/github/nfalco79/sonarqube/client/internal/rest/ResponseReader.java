@@ -0,0 +1,32 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client.internal.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a response body directly from the stream, for responses that must
+ * not be bound to an object graph in one go.
+ *
+ * @param <T> the result type
+ */
+@FunctionalInterface
+public interface ResponseReader<T> {
+
+    T read(InputStream content) throws IOException;
+
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client.limit;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Additive increase, multiplicative decrease limiter.
+ * <p>
+ * While the latency stays close to its long term average and the current
+ * limit is actually used the limit grows by up to one each round trip.
+ * When the server answers 429/503 the limit is cut by half, when the recent
+ * latency exceeds the long term one by the tolerance it is reduced by 10%.
+ * Latencies are compared per endpoint, so that a shift towards slower
+ * endpoints is not taken for an overloaded server. A burst of rejections
+ * received in the same round trip counts as a single decrease.
+ * <p>
+ * Waiting callers park on a {@link ReentrantLock} condition instead of a
+ * monitor, so that virtual threads waiting for a permit do not pin their
+ * carrier thread.
+ *
+ * @author Nikolas Falco
+ */
+public class AIMDLimiter implements ConcurrencyLimiter {
+
+    private static final double RECENT_WEIGHT = 0.2;
+    private static final double BASELINE_WEIGHT = 0.01;
+    private static final double LATENCY_BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private double backoffRatio = 0.5;
+    private double latencyTolerance = 2.0;
+
+    private double limit;
+    private int inFlight;
+    private final Map<String, Latency> latencies = new HashMap<>();
+    private double recentRtt;
+    private long lastDecrease;
+
+    // round trip times of an endpoint, guarded by the lock
+    private static class Latency {
+        private double baseline;
+        private double recent;
+
+        void update(long rtt) {
+            recent = recent == 0 ? rtt : recent + RECENT_WEIGHT * (rtt - recent);
+            if (baseline == 0 || recent < baseline) {
+                baseline = recent;
+            } else {
+                baseline += BASELINE_WEIGHT * (rtt - baseline);
+            }
+        }
+    }
+
+    /**
+     * Creates a limiter.
+     *
+     * @param initialLimit the starting limit
+     * @param minLimit the limit never goes below this value
+     * @param maxLimit the limit never goes above this value
+     */
+    public AIMDLimiter(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid limits [" + minLimit + ", " + maxLimit + "]");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    @Override
+    public Permit acquire() throws InterruptedException {
+        return acquire(null);
+    }
+
+    @Override
+    public Permit acquire(String endpoint) throws InterruptedException {
+        int startInFlight;
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= (int) limit) {
+                available.await();
+            }
+            startInFlight = ++inFlight;
+        } finally {
+            lock.unlock();
+        }
+        return newPermit(endpoint, startInFlight);
+    }
+
+    @Override
+    public Permit tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        return tryAcquire(null, timeout, unit);
+    }
+
+    @Override
+    public Permit tryAcquire(String endpoint, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        int startInFlight;
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= (int) limit) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = available.awaitNanos(nanos);
+            }
+            startInFlight = ++inFlight;
+        } finally {
+            lock.unlock();
+        }
+        return newPermit(endpoint, startInFlight);
+    }
+
+    private Permit newPermit(String endpoint, int startInFlight) {
+        return new Permit() {
+            private boolean released;
+
+            @Override
+            public void onSuccess(long rtt) {
+                release(() -> success(endpoint, rtt, startInFlight));
+            }
+
+            @Override
+            public void onDropped() {
+                release(() -> decrease(backoffRatio));
+            }
+
+            @Override
+            public void onIgnore() {
+                release(() -> {
+                });
+            }
+
+            private void release(Runnable update) {
+                lock.lock();
+                try {
+                    if (released) {
+                        return;
+                    }
+                    released = true;
+                    inFlight--;
+                    update.run();
+                    available.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        };
+    }
+
+    private void success(String endpoint, long rtt, int startInFlight) {
+        // the round trip of any endpoint bounds a burst of decreases
+        recentRtt = recentRtt == 0 ? rtt : recentRtt + RECENT_WEIGHT * (rtt - recentRtt);
+        Latency latency = latencies.computeIfAbsent(endpoint, e -> new Latency());
+        latency.update(rtt);
+
+        if (latency.recent > latency.baseline * latencyTolerance) {
+            decrease(LATENCY_BACKOFF);
+        } else if (startInFlight * 2 >= (int) limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    private void decrease(double ratio) {
+        long now = System.nanoTime();
+        if (lastDecrease != 0 && now - lastDecrease < recentRtt) {
+            return;
+        }
+        lastDecrease = now;
+        limit = Math.max(minLimit, limit * ratio);
+    }
+
+    @Override
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The ratio applied to the limit when the server rejects a request, the
+     * new limit is the current one multiplied by this ratio.
+     *
+     * @return a ratio between 0 and 1 exclusive, default is 0.5
+     */
+    public double getBackoffRatio() {
+        lock.lock();
+        try {
+            return backoffRatio;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the ratio applied to the limit when the server rejects a request.
+     *
+     * @param backoffRatio between 0 and 1, default is 0.5
+     */
+    public void setBackoffRatio(double backoffRatio) {
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("backoffRatio must be between 0 and 1");
+        }
+        lock.lock();
+        try {
+            this.backoffRatio = backoffRatio;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * How many times the recent round trip time may exceed the long term one
+     * before the limit is reduced. It is a multiplier of the latency, it has
+     * no unit.
+     *
+     * @return a multiplier greater than 1, default is 2
+     */
+    public double getLatencyTolerance() {
+        lock.lock();
+        try {
+            return latencyTolerance;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets how many times the recent latency may exceed the long term one
+     * before the limit is reduced.
+     *
+     * @param latencyTolerance greater than 1, default is 2
+     */
+    public void setLatencyTolerance(double latencyTolerance) {
+        if (latencyTolerance <= 1) {
+            throw new IllegalArgumentException("latencyTolerance must be greater than 1");
+        }
+        lock.lock();
+        try {
+            this.latencyTolerance = latencyTolerance;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return "AIMDLimiter[limit=" + (int) limit + ", inFlight=" + inFlight + "]";
+        } finally {
+            lock.unlock();
+        }
+    }
+}
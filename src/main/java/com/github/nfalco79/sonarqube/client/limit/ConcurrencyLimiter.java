@@ -0,0 +1,126 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client.limit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the number of requests in flight towards the server.
+ * <p>
+ * A permit must be acquired before sending a request and completed with
+ * the outcome of the request, so that the limiter can adjust the limit to
+ * what the server is able to sustain. Implementations must be thread safe.
+ *
+ * @author Nikolas Falco
+ */
+public interface ConcurrencyLimiter {
+
+    /**
+     * A slot acquired for one request.
+     */
+    interface Permit {
+
+        /**
+         * The request completed, the round trip time is a sample of the
+         * server latency.
+         *
+         * @param rtt the round trip time in nanoseconds
+         */
+        void onSuccess(long rtt);
+
+        /**
+         * The server rejected the request because overloaded, for example
+         * with 429 or 503.
+         */
+        void onDropped();
+
+        /**
+         * The request failed for reasons not related to the server load.
+         */
+        void onIgnore();
+    }
+
+    /**
+     * Waits until a request can be sent.
+     *
+     * @return the permit to complete once the response is received
+     * @throws InterruptedException if the current thread is interrupted
+     *         while waiting
+     */
+    Permit acquire() throws InterruptedException;
+
+    /**
+     * Waits until a request can be sent or the timeout elapses. The default
+     * implementation waits without timeout.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of the timeout
+     * @return the permit to complete once the response is received or
+     *         {@code null} if the timeout elapsed
+     * @throws InterruptedException if the current thread is interrupted
+     *         while waiting
+     */
+    default Permit tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        return acquire();
+    }
+
+    /**
+     * Waits until a request to the given endpoint can be sent. Limiters that
+     * watch the latency compare the round trip times of the same endpoint.
+     * The default implementation ignores the endpoint.
+     *
+     * @param endpoint the name of the called endpoint, as
+     *        {@code projects.search}
+     * @return the permit to complete once the response is received
+     * @throws InterruptedException if the current thread is interrupted
+     *         while waiting
+     */
+    default Permit acquire(String endpoint) throws InterruptedException {
+        return acquire();
+    }
+
+    /**
+     * Waits until a request to the given endpoint can be sent or the timeout
+     * elapses. The default implementation ignores the endpoint.
+     *
+     * @param endpoint the name of the called endpoint
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of the timeout
+     * @return the permit to complete once the response is received or
+     *         {@code null} if the timeout elapsed
+     * @throws InterruptedException if the current thread is interrupted
+     *         while waiting
+     * @see #acquire(String)
+     */
+    default Permit tryAcquire(String endpoint, long timeout, TimeUnit unit) throws InterruptedException {
+        return tryAcquire(timeout, unit);
+    }
+
+    /**
+     * The current number of concurrent requests allowed.
+     *
+     * @return the limit
+     */
+    int getLimit();
+
+    /**
+     * The number of requests in flight.
+     *
+     * @return the acquired permits
+     */
+    int getInFlight();
+
+}
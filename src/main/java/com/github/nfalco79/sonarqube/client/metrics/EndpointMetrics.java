@@ -0,0 +1,179 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregated measurements of a REST API.
+ *
+ * @author Nikolas Falco
+ */
+public class EndpointMetrics {
+
+    private final String endpoint;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    private final Histogram queueWait = new Histogram();
+    private final Histogram timeToFirstByte = new Histogram();
+    private final Histogram deserialization = new Histogram();
+    private final Map<String, Histogram> timeToFirstByteByAuthentication = new ConcurrentHashMap<>();
+    private final LongAdder sessionRenewals = new LongAdder();
+
+    public EndpointMetrics(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    /* package */ void record(RequestEvent event) {
+        requests.increment();
+        if (event.isError()) {
+            errors.increment();
+        }
+        retries.add(event.getRetries());
+        bytes.add(event.getResponseBytes());
+        statuses.computeIfAbsent(event.getStatus(), status -> new LongAdder()).increment();
+        queueWait.record(event.getQueueWait());
+        timeToFirstByte.record(event.getTimeToFirstByte());
+        deserialization.record(event.getDeserialization());
+        if (event.getAuthentication() != null) {
+            Histogram histogram = timeToFirstByteByAuthentication.get(event.getAuthentication());
+            if (histogram == null) {
+                histogram = timeToFirstByteByAuthentication.computeIfAbsent(event.getAuthentication(), mode -> new Histogram());
+            }
+            histogram.record(event.getTimeToFirstByte());
+        }
+        if (event.getSessionRenewal() > 0) {
+            sessionRenewals.increment();
+        }
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    public long getResponseBytes() {
+        return bytes.sum();
+    }
+
+    /**
+     * Number of requests that had to login again because the session was
+     * expired.
+     *
+     * @return the session renewals
+     */
+    public long getSessionRenewals() {
+        return sessionRenewals.sum();
+    }
+
+    /**
+     * Number of responses by HTTP status, 0 stands for requests that did not
+     * receive any response.
+     *
+     * @return counters by status code
+     */
+    public Map<Integer, Long> getStatuses() {
+        Map<Integer, Long> result = new TreeMap<>();
+        statuses.forEach((status, counter) -> result.put(status, counter.sum()));
+        return result;
+    }
+
+    /**
+     * Nanoseconds waited for a pooled connection.
+     *
+     * @return the queue wait histogram
+     */
+    public Histogram getQueueWait() {
+        return queueWait;
+    }
+
+    /**
+     * Nanoseconds from request sent to response headers received.
+     *
+     * @return the time to first byte histogram
+     */
+    public Histogram getTimeToFirstByte() {
+        return timeToFirstByte;
+    }
+
+    /**
+     * Nanoseconds spent reading and converting response bodies.
+     *
+     * @return the deserialisation histogram
+     */
+    public Histogram getDeserialization() {
+        return deserialization;
+    }
+
+    /**
+     * Nanoseconds from request sent to response headers received of requests
+     * authenticated in the given mode, the difference between modes is the
+     * cost of the authentication on server side.
+     *
+     * @param authentication one of the {@code RequestEvent.AUTHENTICATION_*}
+     *        constants
+     * @return the time to first byte histogram or {@code null} if no request
+     *         was authenticated in this mode
+     */
+    public Histogram getTimeToFirstByte(String authentication) {
+        return timeToFirstByteByAuthentication.get(authentication);
+    }
+
+    /* package */ void reset() {
+        requests.reset();
+        errors.reset();
+        retries.reset();
+        bytes.reset();
+        statuses.clear();
+        queueWait.reset();
+        timeToFirstByte.reset();
+        deserialization.reset();
+        timeToFirstByteByAuthentication.values().forEach(Histogram::reset);
+        sessionRenewals.reset();
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    @Override
+    public String toString() {
+        return endpoint + ": requests=" + getRequests() + " errors=" + getErrors() + " retries=" + getRetries() + " bytes=" + getResponseBytes() //
+                + " ttfb[p50=" + millis(timeToFirstByte.getValueAtPercentile(50)) + "ms" //
+                + " p99=" + millis(timeToFirstByte.getValueAtPercentile(99)) + "ms" //
+                + " max=" + millis(timeToFirstByte.getMax()) + "ms]" //
+                + " wait[p99=" + millis(queueWait.getValueAtPercentile(99)) + "ms]" //
+                + " read[p99=" + millis(deserialization.getValueAtPercentile(99)) + "ms]";
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps per endpoint counters and latency histograms in memory.
+ * <p>
+ * Recording does not lock and does not allocate once an endpoint has been
+ * seen, so this listener can stay enabled in production.
+ *
+ * @author Nikolas Falco
+ */
+public class InMemoryMetrics implements MetricsListener {
+
+    private final ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+
+    @Override
+    public void onRequest(RequestEvent event) {
+        EndpointMetrics metrics = endpoints.get(event.getEndpoint());
+        if (metrics == null) {
+            metrics = endpoints.computeIfAbsent(event.getEndpoint(), EndpointMetrics::new);
+        }
+        metrics.record(event);
+    }
+
+    /**
+     * Returns the metrics of the given endpoint.
+     *
+     * @param endpoint logical name of the endpoint, for example
+     *        {@code projects.search}
+     * @return the endpoint metrics or {@code null} if never called
+     */
+    public EndpointMetrics getEndpoint(String endpoint) {
+        return endpoints.get(endpoint);
+    }
+
+    /**
+     * Returns the metrics of all called endpoints sorted by name.
+     *
+     * @return metrics by endpoint name
+     */
+    public Map<String, EndpointMetrics> getEndpoints() {
+        return Collections.unmodifiableMap(new TreeMap<>(endpoints));
+    }
+
+    /**
+     * Clears all measurements.
+     */
+    public void reset() {
+        endpoints.values().forEach(EndpointMetrics::reset);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        getEndpoints().values().forEach(metrics -> sb.append(metrics).append('\n'));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client.metrics;
+
+/**
+ * Receives a measurement for each HTTP request done by
+ * {@link com.github.nfalco79.sonarqube.client.SonarqubeServerClient}.
+ * <p>
+ * The listener is called synchronously by the thread that performed the
+ * request, implementations must be thread safe and fast.
+ *
+ * @author Nikolas Falco
+ */
+@FunctionalInterface
+public interface MetricsListener {
+
+    /**
+     * Called when a request completes, successfully or not.
+     *
+     * @param event the measurements of the request
+     */
+    void onRequest(RequestEvent event);
+
+}
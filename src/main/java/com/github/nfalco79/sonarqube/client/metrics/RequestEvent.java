@@ -0,0 +1,193 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measurements of a single request. All times are in nanoseconds.
+ *
+ * @author Nikolas Falco
+ */
+public class RequestEvent {
+
+    /** Sent without credentials, like the login. */
+    public static final String AUTHENTICATION_NONE = "none";
+    /** Authenticated by user and password. */
+    public static final String AUTHENTICATION_BASIC = "basic";
+    /** Authenticated by a user token. */
+    public static final String AUTHENTICATION_TOKEN = "token";
+    /** Authenticated by the cookies of a web session. */
+    public static final String AUTHENTICATION_SESSION = "session";
+
+    private final String endpoint;
+    private final String method;
+    private int status;
+    private long queueWait;
+    private long timeToFirstByte;
+    private long deserialization;
+    private long responseBytes;
+    private int retries;
+    private String authentication;
+    private long sessionRenewal;
+
+    public RequestEvent(String endpoint, String method) {
+        this.endpoint = endpoint;
+        this.method = method;
+    }
+
+    /**
+     * Logical name of the REST API, for example {@code webhooks.list}.
+     *
+     * @return the endpoint name
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * The HTTP status of the last response.
+     *
+     * @return the status code or 0 if no response was received
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    /**
+     * Returns if the request fails with an I/O error or an HTTP error code.
+     *
+     * @return {@code true} if the request fails, {@code false} otherwise
+     */
+    public boolean isError() {
+        return status == 0 || status >= 400;
+    }
+
+    /**
+     * Time spent waiting for the concurrency limiter and for a connection
+     * from the pool, over all attempts.
+     *
+     * @return wait time in nanoseconds
+     */
+    public long getQueueWait() {
+        return queueWait;
+    }
+
+    public void setQueueWait(long queueWait) {
+        this.queueWait = queueWait;
+    }
+
+    /**
+     * Time from when the request was sent to when the response headers were
+     * received, for the last attempt.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getTimeToFirstByte() {
+        return timeToFirstByte;
+    }
+
+    public void setTimeToFirstByte(long timeToFirstByte) {
+        this.timeToFirstByte = timeToFirstByte;
+    }
+
+    /**
+     * Time spent reading and converting the response body.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getDeserialization() {
+        return deserialization;
+    }
+
+    public void setDeserialization(long deserialization) {
+        this.deserialization = deserialization;
+    }
+
+    /**
+     * Number of bytes of the response bodies read from the connection, over
+     * all attempts.
+     *
+     * @return the body length
+     */
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    public void setResponseBytes(long responseBytes) {
+        this.responseBytes = responseBytes;
+    }
+
+    /**
+     * How many times the request was sent again after a failure.
+     *
+     * @return the number of retries
+     */
+    public int getRetries() {
+        return retries;
+    }
+
+    public void setRetries(int retries) {
+        this.retries = retries;
+    }
+
+    /**
+     * How the last attempt has been authenticated, one of the
+     * {@code AUTHENTICATION_*} constants.
+     *
+     * @return the authentication mode
+     */
+    public String getAuthentication() {
+        return authentication;
+    }
+
+    public void setAuthentication(String authentication) {
+        this.authentication = authentication;
+    }
+
+    /**
+     * Time spent to login again because the session was expired.
+     *
+     * @return the time in nanoseconds, 0 if the session was not renewed
+     */
+    public long getSessionRenewal() {
+        return sessionRenewal;
+    }
+
+    public void setSessionRenewal(long sessionRenewal) {
+        this.sessionRenewal = sessionRenewal;
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + endpoint + " " + status //
+                + " wait=" + TimeUnit.NANOSECONDS.toMicros(queueWait) + "us" //
+                + " ttfb=" + TimeUnit.NANOSECONDS.toMicros(timeToFirstByte) + "us" //
+                + " read=" + TimeUnit.NANOSECONDS.toMicros(deserialization) + "us" //
+                + " bytes=" + responseBytes //
+                + " retries=" + retries //
+                + " auth=" + authentication //
+                + (sessionRenewal > 0 ? " renewal=" + TimeUnit.NANOSECONDS.toMicros(sessionRenewal) + "us" : "");
+    }
+}
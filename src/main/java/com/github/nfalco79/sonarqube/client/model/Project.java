@@ -15,9 +15,18 @@
  */
 package com.github.nfalco79.sonarqube.client.model;
 
+import java.util.Date;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
 public class Project {
     private String key;
     private String name;
+    private String qualifier;
+    private String visibility;
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ssZ")
+    private Date lastAnalysisDate;
+    private String revision;
 
     public String getKey() {
         return key;
@@ -34,7 +43,55 @@ public class Project {
     public void setName(String name) {
         this.name = name;
     }
-    
+
+    public String getQualifier() {
+        return qualifier;
+    }
+
+    public void setQualifier(String qualifier) {
+        this.qualifier = qualifier;
+    }
+
+    /**
+     * The visibility of the project.
+     *
+     * @return {@code public} or {@code private}
+     */
+    public String getVisibility() {
+        return visibility;
+    }
+
+    public void setVisibility(String visibility) {
+        this.visibility = visibility;
+    }
+
+    /**
+     * The date of the most recent analysis of any branch of the project.
+     *
+     * @return the analysis date, {@code null} if the project has never been
+     *         analysed
+     */
+    public Date getLastAnalysisDate() {
+        return lastAnalysisDate;
+    }
+
+    public void setLastAnalysisDate(Date lastAnalysisDate) {
+        this.lastAnalysisDate = lastAnalysisDate;
+    }
+
+    /**
+     * The SCM revision of the last analysis.
+     *
+     * @return the revision, {@code null} if unknown
+     */
+    public String getRevision() {
+        return revision;
+    }
+
+    public void setRevision(String revision) {
+        this.revision = revision;
+    }
+
     @Override
     public String toString() {
         return key;
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client.transport;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import org.apache.hc.client5.http.classic.methods.HttpUriRequest;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import com.github.nfalco79.sonarqube.client.ConnectionPoolSettings;
+
+/**
+ * Transport based on the Apache HttpClient classic API over a pool of
+ * HTTP/1.1 connections.
+ *
+ * @author Nikolas Falco
+ */
+public class HttpClientTransport implements Transport {
+
+    private final ConnectionPoolSettings poolSettings;
+    private final InstrumentedConnectionManager connectionManager;
+    private final CloseableHttpClient client;
+
+    public HttpClientTransport(ConnectionPoolSettings poolSettings) {
+        this.poolSettings = poolSettings;
+
+        ConnectionConfig.Builder connectionConfig = ConnectionConfig.custom();
+        if (poolSettings.getValidateAfterInactivity() != null) {
+            connectionConfig.setValidateAfterInactivity(toTimeValue(poolSettings.getValidateAfterInactivity()));
+        }
+        if (poolSettings.getTimeToLive() != null) {
+            connectionConfig.setTimeToLive(toTimeValue(poolSettings.getTimeToLive()));
+        }
+        if (poolSettings.getConnectTimeout() != null) {
+            connectionConfig.setConnectTimeout(toTimeout(poolSettings.getConnectTimeout()));
+        }
+        if (poolSettings.getSocketTimeout() != null) {
+            connectionConfig.setSocketTimeout(toTimeout(poolSettings.getSocketTimeout()));
+        }
+        connectionManager = new InstrumentedConnectionManager();
+        connectionManager.setMaxTotal(poolSettings.getMaxTotal());
+        connectionManager.setDefaultMaxPerRoute(poolSettings.getMaxPerRoute());
+        connectionManager.setDefaultConnectionConfig(connectionConfig.build());
+
+        // retries are up to the client that knows which requests are idempotent,
+        // as the session cookies that must be sent with the XSRF token
+        HttpClientBuilder builder = HttpClients.custom() //
+                .setConnectionManager(connectionManager) //
+                .disableAutomaticRetries() //
+                .disableCookieManagement();
+        if (poolSettings.getEvictIdleAfter() != null) {
+            builder.evictExpiredConnections() //
+                    .evictIdleConnections(toTimeValue(poolSettings.getEvictIdleAfter()));
+        }
+        client = builder.build();
+    }
+
+    private static TimeValue toTimeValue(Duration duration) {
+        return TimeValue.ofMilliseconds(duration.toMillis());
+    }
+
+    private static Timeout toTimeout(Duration duration) {
+        return Timeout.ofMilliseconds(duration.toMillis());
+    }
+
+    @Override
+    public ClassicHttpResponse execute(HttpUriRequest request) throws IOException {
+        return client.execute(request);
+    }
+
+    @Override
+    public int getMaxConcurrency() {
+        return poolSettings.getMaxPerRoute();
+    }
+
+    @Override
+    public long takeQueueWait() {
+        return connectionManager.takeLeaseWait();
+    }
+
+    /**
+     * Returns a snapshot of the connection pool usage.
+     *
+     * @return the number of leased, available and pending connections
+     */
+    public PoolStats getPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    @Override
+    public void close() throws IOException {
+        client.close(CloseMode.GRACEFUL);
+    }
+}
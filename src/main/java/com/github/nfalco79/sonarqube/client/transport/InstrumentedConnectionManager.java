@@ -0,0 +1,75 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client.transport;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.core5.util.Timeout;
+
+/**
+ * Connection pool that measures how long each thread waits to lease a
+ * connection.
+ * <p>
+ * The classic client leases connections in the thread that executes the
+ * request, so the wait is accumulated in a thread local and collected by
+ * the caller once the request completes.
+ *
+ * @author Nikolas Falco
+ */
+/* package */ class InstrumentedConnectionManager extends PoolingHttpClientConnectionManager {
+
+    private final ThreadLocal<long[]> leaseWait = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Override
+    public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+        LeaseRequest request = super.lease(id, route, requestTimeout, state);
+        long[] wait = leaseWait.get();
+        return new LeaseRequest() {
+            @Override
+            public ConnectionEndpoint get(Timeout timeout) throws InterruptedException, ExecutionException, TimeoutException {
+                long start = System.nanoTime();
+                try {
+                    return request.get(timeout);
+                } finally {
+                    wait[0] += System.nanoTime() - start;
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                return request.cancel();
+            }
+        };
+    }
+
+    /**
+     * Returns the time the current thread waited for connections since the
+     * last call.
+     *
+     * @return wait time in nanoseconds
+     */
+    public long takeLeaseWait() {
+        long[] wait = leaseWait.get();
+        long value = wait[0];
+        wait[0] = 0;
+        return value;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client.transport;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import org.apache.hc.client5.http.classic.methods.HttpUriRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+
+/**
+ * Transport based on the {@code java.net.http.HttpClient} that multiplexes
+ * the requests over HTTP/2 connections when the server supports it.
+ * <p>
+ * This is the implementation used up to Java 10, where
+ * {@code java.net.http} is not available and the transport can not be
+ * created. The multi-release jar contains the Java 11 implementation in
+ * {@code META-INF/versions/11}.
+ *
+ * @author Nikolas Falco
+ */
+public class JdkHttpTransport implements Transport {
+
+    private static final String UNSUPPORTED = "java.net.http requires Java 11 or later";
+
+    /**
+     * Creates a transport that allows up to 100 concurrent requests, the
+     * usual limit of concurrent streams of an HTTP/2 server.
+     */
+    public JdkHttpTransport() {
+        this(100);
+    }
+
+    /**
+     * Creates a transport.
+     *
+     * @param maxConcurrency the maximum number of concurrent requests
+     */
+    public JdkHttpTransport(int maxConcurrency) {
+        this(maxConcurrency, null, null);
+    }
+
+    /**
+     * Creates a transport.
+     *
+     * @param maxConcurrency the maximum number of concurrent requests
+     * @param connectTimeout the maximum time to establish a connection,
+     *        {@code null} means the system default
+     * @param requestTimeout the maximum time to receive the response headers,
+     *        {@code null} means no timeout, use a deadline to bound the
+     *        reading of the body too
+     */
+    public JdkHttpTransport(int maxConcurrency, Duration connectTimeout, Duration requestTimeout) {
+        throw new UnsupportedOperationException(UNSUPPORTED);
+    }
+
+    /**
+     * Whether this transport is available on the running JVM.
+     *
+     * @return {@code true} on Java 11 and later
+     */
+    public static boolean isSupported() {
+        return false;
+    }
+
+    @Override
+    public ClassicHttpResponse execute(HttpUriRequest request) throws IOException {
+        throw new UnsupportedOperationException(UNSUPPORTED);
+    }
+
+    @Override
+    public int getMaxConcurrency() {
+        throw new UnsupportedOperationException(UNSUPPORTED);
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.apache.hc.client5.http.classic.methods.HttpUriRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+
+/**
+ * Sends the requests of a
+ * {@link com.github.nfalco79.sonarqube.client.SonarqubeServerClient} to the
+ * server.
+ * <p>
+ * The client prepares the request, with authentication and accept headers,
+ * and handles retries, limits and errors; a transport only exchanges
+ * messages. Implementations must be thread safe.
+ *
+ * @author Nikolas Falco
+ */
+public interface Transport extends Closeable {
+
+    /**
+     * Sends the request and returns as soon as the response head is
+     * received. The caller consumes and closes the response.
+     *
+     * @param request to send
+     * @return the response of the server, any status code
+     * @throws IOException if no response has been received
+     */
+    ClassicHttpResponse execute(HttpUriRequest request) throws IOException;
+
+    /**
+     * The maximum number of requests that can be in flight at the same
+     * time without queueing inside the transport.
+     *
+     * @return the maximum concurrency
+     */
+    int getMaxConcurrency();
+
+    /**
+     * Returns the time the current thread waited inside the transport for a
+     * connection since the last call.
+     *
+     * @return wait time in nanoseconds
+     */
+    default long takeQueueWait() {
+        return 0;
+    }
+}
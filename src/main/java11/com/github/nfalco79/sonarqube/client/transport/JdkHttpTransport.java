@@ -0,0 +1,202 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.hc.client5.http.classic.methods.HttpUriRequest;
+import org.apache.hc.core5.concurrent.CancellableDependency;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpVersion;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.InputStreamEntity;
+import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
+
+/**
+ * Transport based on the {@code java.net.http.HttpClient} that multiplexes
+ * the requests over HTTP/2 connections when the server supports it, with
+ * ALPN on TLS or the h2c upgrade on clear text, and falls back to HTTP/1.1
+ * otherwise.
+ *
+ * @author Nikolas Falco
+ */
+public class JdkHttpTransport implements Transport {
+
+    // headers set by the java.net.http client itself
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade");
+
+    private final HttpClient client;
+    private final int maxConcurrency;
+    private final Duration requestTimeout;
+
+    /**
+     * Creates a transport that allows up to 100 concurrent requests, the
+     * usual limit of concurrent streams of an HTTP/2 server.
+     */
+    public JdkHttpTransport() {
+        this(100);
+    }
+
+    /**
+     * Creates a transport.
+     *
+     * @param maxConcurrency the maximum number of concurrent requests
+     */
+    public JdkHttpTransport(int maxConcurrency) {
+        this(maxConcurrency, Duration.ofSeconds(10), Duration.ofMinutes(1));
+    }
+
+    /**
+     * Creates a transport.
+     *
+     * @param maxConcurrency the maximum number of concurrent requests
+     * @param connectTimeout the maximum time to establish a connection,
+     *        {@code null} means the system default
+     * @param requestTimeout the maximum time to receive the response headers,
+     *        {@code null} means no timeout, use a deadline to bound the
+     *        reading of the body too
+     */
+    public JdkHttpTransport(int maxConcurrency, Duration connectTimeout, Duration requestTimeout) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be greater than zero");
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.requestTimeout = requestTimeout;
+        HttpClient.Builder builder = HttpClient.newBuilder() //
+                .version(HttpClient.Version.HTTP_2) //
+                .followRedirects(HttpClient.Redirect.NORMAL);
+        if (connectTimeout != null) {
+            builder.connectTimeout(connectTimeout);
+        }
+        this.client = builder.build();
+    }
+
+    /**
+     * Whether this transport is available on the running JVM.
+     *
+     * @return {@code true} on Java 11 and later
+     */
+    public static boolean isSupported() {
+        return true;
+    }
+
+    @Override
+    public ClassicHttpResponse execute(HttpUriRequest request) throws IOException {
+        HttpRequest.Builder builder;
+        try {
+            builder = HttpRequest.newBuilder(request.getUri()).method(request.getMethod(), bodyOf(request));
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new IOException("Invalid request URI " + request.getRequestUri(), e);
+        }
+        if (requestTimeout != null) {
+            builder.timeout(requestTimeout);
+        }
+        for (Header header : request.getHeaders()) {
+            if (!RESTRICTED_HEADERS.contains(header.getName().toLowerCase(Locale.ENGLISH))) {
+                builder.header(header.getName(), header.getValue());
+            }
+        }
+
+        CompletableFuture<HttpResponse<InputStream>> future = client.sendAsync(builder.build(), BodyHandlers.ofInputStream());
+        if (request instanceof CancellableDependency) {
+            ((CancellableDependency) request).setDependency(() -> future.cancel(true));
+        }
+        if (request.isAborted()) {
+            // aborted before the dependency was set
+            future.cancel(true);
+        }
+        try {
+            HttpResponse<InputStream> response = future.get();
+            if (request instanceof CancellableDependency) {
+                // from now on an abort closes the body, which stops a read in progress
+                InputStream body = response.body();
+                ((CancellableDependency) request).setDependency(() -> {
+                    try {
+                        body.close();
+                    } catch (IOException e) {
+                        // already failed
+                    }
+                    return true;
+                });
+            }
+            return toResponse(response);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + request.getRequestUri());
+        } catch (CancellationException e) {
+            throw new InterruptedIOException("Request " + request.getRequestUri() + " cancelled");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Request " + request.getRequestUri() + " failed", cause);
+        }
+    }
+
+    private static BodyPublisher bodyOf(HttpUriRequest request) throws IOException {
+        HttpEntity entity = request.getEntity();
+        if (entity == null) {
+            return BodyPublishers.noBody();
+        }
+        if (entity.getContentType() != null && !request.containsHeader(HttpHeaders.CONTENT_TYPE)) {
+            request.setHeader(HttpHeaders.CONTENT_TYPE, entity.getContentType());
+        }
+        return BodyPublishers.ofByteArray(EntityUtils.toByteArray(entity));
+    }
+
+    private static ClassicHttpResponse toResponse(HttpResponse<InputStream> response) {
+        BasicClassicHttpResponse result = new BasicClassicHttpResponse(response.statusCode());
+        result.setVersion(response.version() == HttpClient.Version.HTTP_2 ? HttpVersion.HTTP_2 : HttpVersion.HTTP_1_1);
+        response.headers().map().forEach((name, values) -> values.forEach(value -> result.addHeader(name, value)));
+        long length = response.headers().firstValueAsLong(HttpHeaders.CONTENT_LENGTH).orElse(-1);
+        ContentType contentType = response.headers().firstValue(HttpHeaders.CONTENT_TYPE).map(ContentType::parseLenient).orElse(null);
+        // closing the response closes the stream, which releases the connection or the stream
+        result.setEntity(new InputStreamEntity(response.body(), length, contentType));
+        return result;
+    }
+
+    @Override
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // the JDK client has no close before Java 21, its connections are
+        // closed when idle and its threads when the client is collected
+    }
+}
@@ -16,24 +16,35 @@
 package com.github.nfalco79.bitbucket.client;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
 
 import org.apache.hc.client5.http.classic.methods.HttpUriRequest;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.pool.PoolStats;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.github.nfalco79.sonarqube.client.ALMBindings;
 import com.github.nfalco79.sonarqube.client.ClientException;
+import com.github.nfalco79.sonarqube.client.ConnectionPoolSettings;
 import com.github.nfalco79.sonarqube.client.Credentials.CredentialsBuilder;
 import com.github.nfalco79.sonarqube.client.SonarqubeServerClient;
+import com.github.nfalco79.sonarqube.client.cache.LRUResponseCache;
+import com.github.nfalco79.sonarqube.client.internal.rest.ResponseReader;
 import com.github.nfalco79.sonarqube.client.model.ALMSettings;
 import com.github.nfalco79.sonarqube.client.model.Project;
 import com.github.nfalco79.sonarqube.client.model.ProjectLink;
@@ -48,7 +59,7 @@ public class CloudClientTest {
     public void setupClient() throws Exception {
         // LogManager.getLogManager().readConfiguration(getClass().getResourceAsStream("/logging.properties"));
 
-        uriCalls = new LinkedList<>();
+        uriCalls = new ConcurrentLinkedQueue<>();
         client = new SonarqubeServerClient("http://localhost:9000", CredentialsBuilder.basic("user", "password")) {
             @SuppressWarnings("unchecked")
             @Override
@@ -59,11 +70,16 @@ public class CloudClientTest {
                     String query = requestURI.getQuery();
                     String resource = requestURI.getPath() //
                             + "/response" + (query != null ? "_" + query : "") + ".json";
+                    if (type != null && CloudClientTest.class.getResource(resource) == null) {
+                        throw new ClientException(HttpStatus.SC_NOT_FOUND, null);
+                    }
                     try (InputStream is = CloudClientTest.class.getResourceAsStream(resource)) {
                         if (type instanceof Class) {
                             return objectMapper.readValue(is, (Class<T>) type);
                         } else if (type instanceof TypeReference) {
                             return objectMapper.readValue(is, (TypeReference<T>) type);
+                        } else if (type instanceof ResponseReader) {
+                            return ((ResponseReader<T>) type).read(is);
                         } else {
                             return null;
                         }
@@ -83,6 +99,19 @@ public class CloudClientTest {
         client.login();
     }
 
+    @Test
+    public void pool_settings() throws Exception {
+        ConnectionPoolSettings settings = new ConnectionPoolSettings();
+        settings.setMaxTotal(10);
+        settings.setMaxPerRoute(5);
+        try (SonarqubeServerClient client = new SonarqubeServerClient("http://localhost:9000", CredentialsBuilder.apiToken("0123456789"), settings)) {
+            PoolStats stats = client.getPoolStats();
+            assertThat(stats.getMax()).isEqualTo(10);
+            assertThat(stats.getLeased()).isZero();
+            assertThat(stats.getPending()).isZero();
+        }
+    }
+
     @Test
     public void login() throws Exception {
         client.login();
@@ -94,6 +123,29 @@ public class CloudClientTest {
         assertThat(projects).isNotEmpty().hasSizeGreaterThanOrEqualTo(2);
     }
 
+    @Test
+    public void projects_pages_are_collected_in_order() throws Exception {
+        client.setParallelism(2);
+        List<Project> projects = client.getProjects();
+        assertThat(projects).extracting(Project::getKey).containsExactly("com.acme:calendar.parent", "com.acme:mail");
+        assertThat(uriCalls).containsOnly(new URL("http://localhost:9000/api/projects/search?ps=500"), //
+                new URL("http://localhost:9000/api/projects/search?p=2&ps=1"));
+    }
+
+    @Test
+    public void stream_projects() throws Exception {
+        try (Stream<Project> projects = client.streamProjects()) {
+            assertThat(projects.map(Project::getKey)).containsExactly("com.acme:calendar.parent", "com.acme:mail");
+        }
+    }
+
+    @Test
+    public void for_each_project() throws Exception {
+        List<String> keys = new ArrayList<>();
+        client.forEachProject(null, project -> keys.add(project.getKey()));
+        assertThat(keys).containsExactly("com.acme:calendar.parent", "com.acme:mail");
+    }
+
     @Test
     public void projects_with_filter() throws Exception {
         List<Project> projects = client.getProjects("calendar.parent");
@@ -112,6 +164,45 @@ public class CloudClientTest {
         assertThat(almSettings).isNotNull();
     }
 
+    @Test
+    public void bulk_alm_settings() throws Exception {
+        ALMBindings bindings = client.getALMSettings(Arrays.asList("calendar.parent", "unknown"));
+        assertThat(bindings.getSettings()).containsOnlyKeys("calendar.parent");
+        assertThat(bindings.getFailures()).containsOnlyKeys("unknown");
+        assertThat(bindings.getFailures().get("unknown").getStatus()).isEqualTo(HttpStatus.SC_NOT_FOUND);
+        assertThat(bindings.getProjects("calendar.parent")).containsExactly("calendar.parent");
+    }
+
+    @Test
+    public void cached_alm_settings() throws Exception {
+        client.setResponseCache(new LRUResponseCache(10, Duration.ofMinutes(1)));
+        ALMSettings almSettings = client.getALMSettings("calendar.parent");
+        assertThat(client.getALMSettings("calendar.parent")).isSameAs(almSettings);
+        assertThat(uriCalls).hasSize(1);
+    }
+
+    @Test
+    public void cached_not_found() throws Exception {
+        client.setResponseCache(new LRUResponseCache(10, Duration.ofMinutes(1)));
+        ClientException first = catchThrowableOfType(() -> client.getALMSettings("unknown"), ClientException.class);
+        ClientException second = catchThrowableOfType(() -> client.getALMSettings("unknown"), ClientException.class);
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getStatus()).isEqualTo(HttpStatus.SC_NOT_FOUND);
+        assertThat(uriCalls).hasSize(1);
+    }
+
+    @Test
+    public void webhook_changes_invalidate_cache() throws Exception {
+        client.setResponseCache(new LRUResponseCache(10, Duration.ofMinutes(1)));
+        client.getWebhooks("calendar.parent");
+        client.getWebhooks("calendar.parent");
+        assertThat(uriCalls).hasSize(1);
+
+        client.deleteWebhook("AX8MRJ99IQ7HBt-oGaf8");
+        client.getWebhooks("calendar.parent");
+        assertThat(uriCalls).hasSize(3);
+    }
+
     @Test
     public void project_links() throws Exception {
         List<ProjectLink> links = client.getProjectLinks("calendar.parent");
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+
+import org.apache.hc.core5.http.HttpStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.nfalco79.sonarqube.client.Credentials.CredentialsBuilder;
+import com.github.nfalco79.sonarqube.client.FederatedResult.Item;
+import com.github.nfalco79.sonarqube.client.SonarqubeStubServer.Latency;
+import com.github.nfalco79.sonarqube.client.model.Project;
+
+public class FederatedClientTest {
+
+    private SonarqubeStubServer emea;
+    private SonarqubeStubServer apac;
+    private FederatedClient federation;
+
+    @Before
+    public void setup() throws IOException {
+        emea = new SonarqubeStubServer(120);
+        apac = new SonarqubeStubServer(30);
+        federation = FederatedClient.builder() //
+                .add("emea", emea.getURL(), CredentialsBuilder.apiToken("0123456789")) //
+                .add("apac", apac.getURL(), CredentialsBuilder.apiToken("9876543210")) //
+                .timeout(Duration.ofSeconds(2)) //
+                .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        federation.close();
+        emea.close();
+        apac.close();
+    }
+
+    @Test
+    public void results_are_tagged_with_the_server() throws Exception {
+        FederatedResult<Project> projects = federation.getProjects();
+        assertThat(projects.isPartial()).isFalse();
+        assertThat(projects.getItems()).hasSize(150);
+        assertThat(projects.stream().filter(item -> "apac".equals(item.getServer()))).hasSize(30);
+        assertThat(projects.getItems().get(0).getServer()).isEqualTo("emea");
+
+        FederatedResult<ALMBindings> bindings = federation.getALMSettings(Arrays.asList(SonarqubeStubServer.projectKey(50)));
+        assertThat(bindings.getItems()).extracting(Item::getServer).containsExactly("emea", "apac");
+        assertThat(bindings.getValues().get(0).getSettings()).containsOnlyKeys(SonarqubeStubServer.projectKey(50));
+        assertThat(bindings.getValues().get(1).getFailures()).containsOnlyKeys(SonarqubeStubServer.projectKey(50));
+    }
+
+    @Test
+    public void slow_or_failing_server_gives_partial_result() throws Exception {
+        emea.setLatency(Latency.fixed(Duration.ofSeconds(10)));
+        long start = System.nanoTime();
+        FederatedResult<Project> projects = federation.getProjects();
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+        assertThat(projects.isPartial()).isTrue();
+        assertThat(projects.getFailures()).containsOnlyKeys("emea");
+        assertThat(projects.getItems()).hasSize(30).allMatch(item -> "apac".equals(item.getServer()));
+
+        emea.setLatency(Latency.none());
+        apac.failNext(10, HttpStatus.SC_FORBIDDEN, null);
+        projects = federation.getProjects();
+        assertThat(projects.getFailures()).containsOnlyKeys("apac");
+        assertThat(projects.getFailures().get("apac").getStatus()).isEqualTo(HttpStatus.SC_FORBIDDEN);
+        assertThat(projects.getItems()).hasSize(120);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.nfalco79.sonarqube.client.Credentials.CredentialsBuilder;
+import com.github.nfalco79.sonarqube.client.model.Project;
+
+public class InventoryLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SonarqubeStubServer server;
+    private SonarqubeServerClient client;
+    private Path file;
+
+    @Before
+    public void setup() throws IOException {
+        server = new SonarqubeStubServer(100);
+        client = new SonarqubeServerClient(server.getURL(), CredentialsBuilder.apiToken("0123456789"));
+        file = folder.getRoot().toPath().resolve("inventory.bin");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void warm_start_from_snapshot() throws Exception {
+        ProjectInventory inventory = new InventoryLoader(client, file).load();
+        assertThat(inventory.getProjects()).hasSize(100);
+        assertThat(Files.exists(file)).isTrue();
+
+        long requests = server.getRequestCount();
+        ProjectInventory snapshot = new InventoryLoader(client, file).load();
+        assertThat(server.getRequestCount()).isEqualTo(requests);
+        assertThat(snapshot.getCreated()).isEqualTo(inventory.getCreated());
+        assertThat(snapshot.getProjects()).usingRecursiveFieldByFieldElementComparator().isEqualTo(inventory.getProjects());
+
+        String key = SonarqubeStubServer.projectKey(42);
+        assertThat(snapshot.getLinks(key)).hasSize(3).usingRecursiveFieldByFieldElementComparator().isEqualTo(inventory.getLinks(key));
+        assertThat(snapshot.getALMSettings(key)).usingRecursiveComparison().isEqualTo(inventory.getALMSettings(key));
+        assertThat(snapshot.getALMSettings(key).getRepository()).isEqualTo("project-42");
+    }
+
+    @Test
+    public void stale_snapshot_is_refreshed_in_background() throws Exception {
+        InventoryLoader loader = new InventoryLoader(client, file);
+        ProjectInventory inventory = loader.load();
+        InventorySnapshot.write(new ProjectInventory(inventory.getServerURL(), Instant.now().minus(Duration.ofHours(2)), //
+                inventory.getProjects(), inventory.getLinks(), inventory.getALMBindings()), file);
+        server.analyse(3);
+
+        loader = new InventoryLoader(client, file);
+        long requests = server.getRequestCount("/api/project_links/search");
+        ProjectInventory stale = loader.load();
+        assertThat(stale.getCreated()).isBefore(inventory.getCreated());
+
+        ProjectInventory refreshed = loader.refreshInBackground().get(10, TimeUnit.SECONDS);
+        assertThat(refreshed.getCreated()).isAfter(stale.getCreated());
+        assertThat(refreshed.getDetailsRead()).isEqualTo(stale.getDetailsRead());
+        assertThat(server.getRequestCount("/api/project_links/search") - requests).isEqualTo(1);
+        assertThat(refreshed.getProjects()).filteredOn(project -> project.getKey().equals(SonarqubeStubServer.projectKey(3))) //
+                .extracting(Project::getLastAnalysisDate) //
+                .allMatch(date -> !date.before(inventory.getProjects().get(0).getLastAnalysisDate()));
+        assertThat(loader.load()).isSameAs(refreshed);
+        assertThat(InventorySnapshot.read(file).getCreated()).isEqualTo(refreshed.getCreated());
+    }
+
+    @Test
+    public void old_details_are_read_again() throws Exception {
+        InventoryLoader loader = new InventoryLoader(client, file);
+        ProjectInventory inventory = loader.load();
+        Instant created = Instant.now().minus(Duration.ofHours(2));
+        InventorySnapshot.write(new ProjectInventory(inventory.getServerURL(), created, created.minus(Duration.ofDays(1)), //
+                inventory.getProjects(), inventory.getLinks(), inventory.getALMBindings()), file);
+
+        loader = new InventoryLoader(client, file);
+        long requests = server.getRequestCount("/api/project_links/search");
+        ProjectInventory refreshed = loader.refresh();
+        assertThat(server.getRequestCount("/api/project_links/search") - requests).isEqualTo(100);
+        assertThat(refreshed.getDetailsRead()).isEqualTo(refreshed.getCreated());
+        assertThat(InventorySnapshot.read(file).getDetailsRead()).isEqualTo(refreshed.getDetailsRead());
+    }
+
+    @Test
+    public void corrupted_snapshot_is_refused() throws Exception {
+        new InventoryLoader(client, file).load();
+        byte[] content = Files.readAllBytes(file);
+        content[content.length / 2] ^= 1;
+        assertThatThrownBy(() -> InventorySnapshot.read(ByteBuffer.wrap(content))).isInstanceOf(IOException.class);
+
+        Files.write(file, content);
+        assertThat(new InventoryLoader(client, file).load().getProjects()).hasSize(100);
+        assertThat(InventorySnapshot.read(file).getProjects()).hasSize(100);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.nfalco79.sonarqube.client.Credentials.CredentialsBuilder;
+import com.github.nfalco79.sonarqube.client.ProjectChange.Type;
+
+public class ProjectSyncTest {
+
+    private SonarqubeStubServer server;
+    private SonarqubeServerClient client;
+
+    @Before
+    public void setup() throws IOException {
+        server = new SonarqubeStubServer(1200);
+        client = new SonarqubeServerClient(server.getURL(), CredentialsBuilder.apiToken("0123456789"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void unchanged_projects_are_not_read_again() throws Exception {
+        ProjectSync sync = new ProjectSync(client);
+        List<ProjectChange> changes = new ArrayList<>();
+        assertThat(sync.sync(changes::add)).isTrue();
+        assertThat(changes).hasSize(1200).allMatch(change -> change.getType() == Type.ADDED);
+        assertThat(sync.getHighWaterMark()).isEqualTo(sync.getProjects().stream() //
+                .filter(project -> project.getKey().equals(SonarqubeStubServer.projectKey(0))) //
+                .findFirst().get().getLastAnalysisDate());
+
+        changes.clear();
+        long requests = server.getRequestCount();
+        assertThat(new ProjectSync(client, sync.getProjects()).sync(changes::add)).isFalse();
+        assertThat(changes).isEmpty();
+        assertThat(server.getRequestCount() - requests).isEqualTo(3);
+    }
+
+    @Test
+    public void changes_since_last_sync() throws Exception {
+        ProjectSync sync = new ProjectSync(client);
+        sync.sync(change -> {
+        });
+        server.analyse(500);
+        server.delete(7);
+        int added = server.provision();
+
+        List<ProjectChange> changes = new ArrayList<>();
+        assertThat(sync.sync(changes::add)).isTrue();
+        assertThat(changes).extracting(ProjectChange::toString).containsExactlyInAnyOrder( //
+                "CHANGED " + SonarqubeStubServer.projectKey(500), //
+                "REMOVED " + SonarqubeStubServer.projectKey(7), //
+                "ADDED " + SonarqubeStubServer.projectKey(added));
+        assertThat(sync.getProjects()).hasSize(1200);
+        ProjectChange analysed = changes.stream().filter(change -> change.getType() == Type.CHANGED).findFirst().get();
+        assertThat(analysed.getCurrent().getRevision()).isNotEqualTo(analysed.getPrevious().getRevision());
+        assertThat(sync.getHighWaterMark()).isEqualTo(analysed.getCurrent().getLastAnalysisDate());
+
+        changes.clear();
+        assertThat(sync.sync(changes::add)).isFalse();
+    }
+
+    @Test
+    public void most_recent_project_analysed_again() throws Exception {
+        ProjectSync sync = new ProjectSync(client);
+        sync.sync(change -> {
+        });
+        // the project at the high-water mark
+        server.analyse(0);
+
+        List<ProjectChange> changes = new ArrayList<>();
+        assertThat(sync.sync(changes::add)).isTrue();
+        assertThat(changes).extracting(ProjectChange::toString).containsExactly("CHANGED " + SonarqubeStubServer.projectKey(0));
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class RequestTemplateTest {
+
+    @Test
+    public void undefined_variables_are_omitted() {
+        RequestTemplate template = RequestTemplate.compile("/api/projects/search{?projects,qualifiers,q,p,ps}");
+        assertThat(template.set("q", "core").set("ps", 500).expand("http://localhost:9000")) //
+                .isEqualTo("http://localhost:9000/api/projects/search?q=core&ps=500");
+        assertThat(template.expand("http://localhost:9000")).isEqualTo("http://localhost:9000/api/projects/search");
+    }
+
+    @Test
+    public void values_are_form_encoded() {
+        RequestTemplate template = RequestTemplate.compile("/api/webhooks/create{?name,project,secret,url}");
+        String uri = template.set("name", "my hook") //
+                .set("url", "http://www.google.com/sonarqube-webhook") //
+                .set("secret", "caf\u00e9~\ud83d\ude00") //
+                .expand("");
+        assertThat(uri).isEqualTo("/api/webhooks/create?name=my%20hook&secret=caf%C3%A9~%F0%9F%98%80&url=http%3A%2F%2Fwww.google.com%2Fsonarqube-webhook");
+    }
+
+    @Test
+    public void endpoint_name() {
+        assertThat(RequestTemplate.compile("/api/alm_settings/get_binding{?project}").getEndpoint()).isEqualTo("alm_settings.get_binding");
+        assertThat(RequestTemplate.compile("/api/authentication/validate").getEndpoint()).isEqualTo("authentication.validate");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknown_variable() {
+        RequestTemplate.compile("/api/webhooks/list{?project}").set("projectKey", "test");
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+import org.junit.Test;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void exponential_delay_with_jitter_and_cap() {
+        RetryPolicy policy = new RetryPolicy();
+        policy.setMaxRetries(10);
+        policy.setInitialDelay(Duration.ofMillis(100));
+        policy.setMaxDelay(Duration.ofSeconds(1));
+        for (int i = 0; i < 100; i++) {
+            assertThat(policy.getDelay(1, null)).isBetween(Duration.ofMillis(50), Duration.ofMillis(100));
+            assertThat(policy.getDelay(3, null)).isBetween(Duration.ofMillis(200), Duration.ofMillis(400));
+            assertThat(policy.getDelay(10, null)).isBetween(Duration.ofMillis(500), Duration.ofSeconds(1));
+        }
+        assertThat(policy.getDelay(11, null)).isNull();
+    }
+
+    @Test
+    public void retry_after_takes_precedence_up_to_max_delay() {
+        RetryPolicy policy = new RetryPolicy();
+        policy.setMaxDelay(Duration.ofSeconds(10));
+        assertThat(policy.getDelay(1, Duration.ofSeconds(7))).isEqualTo(Duration.ofSeconds(7));
+        assertThat(policy.getDelay(1, Duration.ofSeconds(11))).isNull();
+    }
+
+    @Test
+    public void parse_retry_after() {
+        assertThat(RetryPolicy.parseRetryAfter("120")).isEqualTo(Duration.ofMinutes(2));
+        assertThat(RetryPolicy.parseRetryAfter("soon")).isNull();
+        String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusMinutes(5));
+        assertThat(RetryPolicy.parseRetryAfter(date)).isBetween(Duration.ofMinutes(4), Duration.ofMinutes(5));
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.nfalco79.sonarqube.client.Credentials.CredentialsBuilder;
+import com.github.nfalco79.sonarqube.client.model.ALMSettings;
+import com.github.nfalco79.sonarqube.client.model.Project;
+import com.github.nfalco79.sonarqube.client.model.Webhook;
+
+public class SonarqubeAsyncClientTest {
+
+    private SonarqubeAsyncClient client;
+
+    @Before
+    public void setupClient() throws Exception {
+        client = new SonarqubeAsyncClient("http://localhost:9000", CredentialsBuilder.basic("user", "password")) {
+            @SuppressWarnings("unchecked")
+            @Override
+            protected <T> CompletableFuture<T> process(SimpleHttpRequest request, Object type) {
+                CompletableFuture<T> result = new CompletableFuture<>();
+                try {
+                    URL requestURI = request.getUri().toURL();
+                    String query = requestURI.getQuery();
+                    String resource = requestURI.getPath() //
+                            + "/response" + (query != null ? "_" + query : "") + ".json";
+                    try (InputStream is = SonarqubeAsyncClientTest.class.getResourceAsStream(resource)) {
+                        result.complete(type == null ? null : objectMapper.readValue(is, (Class<T>) type));
+                    }
+                } catch (Exception e) {
+                    result.completeExceptionally(new ClientException("Fail to deserialize response.", e));
+                }
+                return result;
+            }
+        };
+    }
+
+    @After
+    public void closeClient() throws IOException {
+        client.close();
+    }
+
+    @Test
+    public void projects() throws Exception {
+        List<Project> projects = client.getProjects().get();
+        assertThat(projects).extracting(Project::getKey).containsExactly("com.acme:calendar.parent", "com.acme:mail");
+    }
+
+    @Test
+    public void alm_settings() throws Exception {
+        ALMSettings almSettings = client.getALMSettings("calendar.parent").get();
+        assertThat(almSettings.getRepository()).isEqualTo("calendar.parent");
+    }
+
+    @Test
+    public void project_webhooks() throws Exception {
+        List<Webhook> webhooks = client.getWebhooks("calendar.parent").get();
+        assertThat(webhooks).hasSize(1);
+    }
+
+    @Test
+    public void unsupported_login_credentials() throws Exception {
+        client.close();
+        client = new SonarqubeAsyncClient("http://localhost:9000", CredentialsBuilder.apiToken("0123456789"));
+        assertThatThrownBy(() -> client.login().get()).hasCauseInstanceOf(ClientException.class);
+    }
+}
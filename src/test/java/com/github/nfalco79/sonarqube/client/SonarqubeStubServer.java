@@ -0,0 +1,745 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.github.nfalco79.sonarqube.client.model.Webhook;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Embedded HTTP server that implements the subset of the Sonarqube Web API
+ * used by the clients over a generated data set.
+ * <p>
+ * Besides serving data the server can inject latency, bursts of
+ * {@code 429}/{@code 503} responses with a {@code Retry-After} header and
+ * connections dropped without any response. Projects can be analysed,
+ * provisioned and deleted while the server is running.
+ *
+ * @author Nikolas Falco
+ */
+public class SonarqubeStubServer implements Closeable {
+
+    /**
+     * Latency added to every response.
+     */
+    public interface Latency {
+
+        /**
+         * Returns the delay to apply to the next response.
+         *
+         * @return the delay in nanoseconds
+         */
+        long nextDelay();
+
+        static Latency none() {
+            return () -> 0;
+        }
+
+        static Latency fixed(Duration delay) {
+            long nanos = delay.toNanos();
+            return () -> nanos;
+        }
+
+        static Latency uniform(Duration min, Duration max) {
+            long lower = min.toNanos();
+            long upper = max.toNanos();
+            return () -> ThreadLocalRandom.current().nextLong(lower, upper + 1);
+        }
+
+        /**
+         * Long tail distribution where most of the responses are close to the
+         * median and a few are much slower.
+         *
+         * @param median the median delay
+         * @param sigma the standard deviation of the underlying normal
+         *        distribution, {@code 0.5} gives a p99 about three times the
+         *        median
+         * @return a log-normal latency
+         */
+        static Latency logNormal(Duration median, double sigma) {
+            long nanos = median.toNanos();
+            return () -> (long) (nanos * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+        }
+    }
+
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final String[] LINK_TYPES = { "ci", "issue", "scm" };
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssZ").withZone(ZoneOffset.UTC);
+    // analysis date of the first project, the others have been analysed a minute earlier each
+    private static final long FIRST_ANALYSIS = Instant.parse("2022-01-21T10:12:06Z").getEpochSecond();
+    private static final long PROVISIONED = 0;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private volatile int projects;
+    private final Set<Integer> deleted = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, Long> analyses = new ConcurrentHashMap<>();
+    private final AtomicLong lastAnalysis = new AtomicLong(FIRST_ANALYSIS);
+    private final Map<String, List<Webhook>> webhooks = new ConcurrentHashMap<>();
+    private final AtomicLong webhookSequence = new AtomicLong();
+    private final Map<String, LongAdder> requests = new ConcurrentHashMap<>();
+    private volatile Latency latency = Latency.none();
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile int failureStatus;
+    private volatile Duration retryAfter;
+    private final AtomicInteger drops = new AtomicInteger();
+    private final AtomicInteger truncations = new AtomicInteger();
+    private final AtomicInteger stalls = new AtomicInteger();
+    private volatile Duration stall;
+    private final Map<String, Duration> slowProjects = new ConcurrentHashMap<>();
+    // session cookie to XSRF token of the open sessions
+    private final Map<String, String> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong sessionSequence = new AtomicLong();
+    private final LongAdder basicAuthentications = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+
+    /**
+     * Creates a server with the given number of projects, each one bound to
+     * a Bitbucket Cloud repository and with one webhook.
+     *
+     * @param projects the number of projects in the data set
+     * @throws IOException if the server could not bind a local port
+     */
+    public SonarqubeStubServer(int projects) throws IOException {
+        this(projects, 1);
+    }
+
+    /**
+     * Creates a server with the given number of projects.
+     *
+     * @param projects the number of projects in the data set
+     * @param webhooksPerProject the number of webhooks of each project
+     * @throws IOException if the server could not bind a local port
+     */
+    public SonarqubeStubServer(int projects, int webhooksPerProject) throws IOException {
+        this.projects = projects;
+        for (int i = 0; i < projects; i++) {
+            List<Webhook> projectWebhooks = new CopyOnWriteArrayList<>();
+            for (int w = 0; w < webhooksPerProject; w++) {
+                projectWebhooks.add(newWebhook("Jenkins Integration " + w, "https://ci.acme.com/jenkins/sonarqube-webhook/", null));
+            }
+            webhooks.put(projectKey(i), projectWebhooks);
+        }
+        webhooks.put("", new CopyOnWriteArrayList<>(Collections.singletonList(newWebhook("Global", "https://ci.acme.com/global-webhook/", null))));
+
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "sonarqube-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Returns the key of the project at the given position of the data set.
+     *
+     * @param index the project position
+     * @return the project key
+     */
+    public static String projectKey(int index) {
+        return String.format("com.acme:project-%05d", index);
+    }
+
+    /**
+     * Returns the base URL of this server.
+     *
+     * @return the server URL
+     */
+    public String getURL() {
+        InetSocketAddress address = server.getAddress();
+        return "http://" + address.getHostString() + ":" + address.getPort();
+    }
+
+    /**
+     * Simulates a new analysis of the project, its analysis date becomes the
+     * most recent one and its revision changes.
+     *
+     * @param index the project position
+     */
+    public void analyse(int index) {
+        analyses.put(index, lastAnalysis.addAndGet(60));
+    }
+
+    /**
+     * Adds a project that has never been analysed.
+     *
+     * @return the position of the new project
+     */
+    public synchronized int provision() {
+        int index = projects;
+        webhooks.put(projectKey(index), new CopyOnWriteArrayList<>());
+        analyses.put(index, PROVISIONED);
+        projects = index + 1;
+        return index;
+    }
+
+    /**
+     * Deletes the project from the data set.
+     *
+     * @param index the project position
+     */
+    public void delete(int index) {
+        deleted.add(index);
+        webhooks.remove(projectKey(index));
+    }
+
+    /**
+     * Sets the latency to add to every following response.
+     *
+     * @param latency the latency model
+     */
+    public void setLatency(Latency latency) {
+        this.latency = latency != null ? latency : Latency.none();
+    }
+
+    /**
+     * The next requests are answered with the given status code.
+     *
+     * @param count the number of requests to fail
+     * @param status the status code, usually 429 or 503
+     * @param retryAfter the value of the Retry-After header, {@code null} to
+     *        omit it
+     */
+    public void failNext(int count, int status, Duration retryAfter) {
+        this.failureStatus = status;
+        this.retryAfter = retryAfter;
+        failures.set(count);
+    }
+
+    /**
+     * The connection of the next requests is closed without sending any
+     * response.
+     *
+     * @param count the number of requests to drop
+     */
+    public void dropNext(int count) {
+        drops.set(count);
+    }
+
+    /**
+     * The body of the next successful responses is cut in half and the
+     * connection is closed, as when the connection drops while the response
+     * is being read.
+     *
+     * @param count the number of responses to truncate
+     */
+    public void truncateNext(int count) {
+        truncations.set(count);
+    }
+
+    /**
+     * The body of the next successful responses stops in the middle for the
+     * given time, as a server or a network that stalls.
+     *
+     * @param count the number of responses to stall
+     * @param stall how long the body stops
+     */
+    public void stallNext(int count, Duration stall) {
+        this.stall = stall;
+        stalls.set(count);
+    }
+
+    /**
+     * Delays every request about the given project, in addition to the
+     * latency.
+     *
+     * @param projectKey the key sent as project parameter
+     * @param delay how long each request waits
+     */
+    public void slowDown(String projectKey, Duration delay) {
+        slowProjects.put(projectKey, delay);
+    }
+
+    /**
+     * Returns the number of requests received for the given path, including
+     * the failed and dropped ones.
+     *
+     * @param path the request path
+     * @return the number of requests
+     */
+    public long getRequestCount(String path) {
+        LongAdder counter = requests.get(path);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    /**
+     * Returns the total number of received requests.
+     *
+     * @return the number of requests
+     */
+    public long getRequestCount() {
+        return requests.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    /**
+     * Expires all open sessions, the following requests authenticated by a
+     * session cookie fail with 401.
+     */
+    public void expireSessions() {
+        sessions.clear();
+    }
+
+    /**
+     * Returns how many requests have been authenticated with the Basic
+     * scheme, each one costs a password hash check to a real server.
+     *
+     * @return the number of requests with an Authorization header
+     */
+    public long getBasicAuthentications() {
+        return basicAuthentications.sum();
+    }
+
+    /**
+     * Returns how many GET requests have been answered 304 because the
+     * entity tag sent in If-None-Match still matches the response.
+     *
+     * @return the number of responses without body
+     */
+    public long getNotModifiedCount() {
+        return notModified.sum();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        requests.computeIfAbsent(path, p -> new LongAdder()).increment();
+        try {
+            long delay = latency.nextDelay();
+            if (delay > 0) {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            }
+            if (take(drops)) {
+                exchange.close(); // headers not sent yet, the connection is closed
+                return;
+            }
+            if (take(failures)) {
+                if (retryAfter != null) {
+                    exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfter.getSeconds()));
+                }
+                sendError(exchange, failureStatus, "Too many requests");
+                return;
+            }
+
+            if (!authenticate(exchange)) {
+                sendError(exchange, 401, "Unauthorized");
+                return;
+            }
+
+            Map<String, String> params = params(exchange);
+            Duration slowDown = params.containsKey("project") ? slowProjects.get(params.get("project")) : null;
+            if (slowDown != null) {
+                TimeUnit.MILLISECONDS.sleep(slowDown.toMillis());
+            }
+            switch (path) {
+            case "/api/authentication/validate":
+                sendJson(exchange, json -> {
+                    json.writeStartObject();
+                    json.writeBooleanField("valid", true);
+                    json.writeEndObject();
+                });
+                break;
+            case "/api/authentication/login":
+                login(exchange);
+                break;
+            case "/api/projects/search":
+                searchProjects(exchange, params);
+                break;
+            case "/api/project_links/search":
+                projectLinks(exchange, params);
+                break;
+            case "/api/alm_settings/get_binding":
+                almBinding(exchange, params);
+                break;
+            case "/api/alm_settings/set_bitbucketcloud_binding":
+                send(exchange, isProject(params.get("project")) ? 204 : 404);
+                break;
+            case "/api/webhooks/list":
+                listWebhooks(exchange, params);
+                break;
+            case "/api/webhooks/create":
+                createWebhook(exchange, params);
+                break;
+            case "/api/webhooks/delete":
+                deleteWebhook(exchange, params);
+                break;
+            default:
+                sendError(exchange, 404, "Unknown url : " + path);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+        } catch (RuntimeException e) {
+            sendError(exchange, 400, e.getMessage());
+        }
+    }
+
+    /*
+     * A request with the session cookie must be of an open session, the other
+     * methods than GET must also send the XSRF token of the session.
+     */
+    private boolean authenticate(HttpExchange exchange) {
+        if (exchange.getRequestHeaders().containsKey("Authorization")) {
+            basicAuthentications.increment();
+        }
+        String cookies = exchange.getRequestHeaders().getFirst("Cookie");
+        String jwt = null;
+        if (cookies != null) {
+            for (String cookie : cookies.split(";")) {
+                String[] pair = cookie.trim().split("=", 2);
+                if (pair.length == 2 && Session.JWT_SESSION.equals(pair[0])) {
+                    jwt = pair[1];
+                }
+            }
+        }
+        if (jwt == null) {
+            return true;
+        }
+        String xsrf = sessions.get(jwt);
+        return xsrf != null && ("GET".equals(exchange.getRequestMethod()) //
+                || xsrf.equals(exchange.getRequestHeaders().getFirst(Session.XSRF_HEADER)));
+    }
+
+    private void login(HttpExchange exchange) throws IOException {
+        long id = sessionSequence.incrementAndGet();
+        String jwt = "jwt-" + id;
+        String xsrf = "xsrf-" + id;
+        sessions.put(jwt, xsrf);
+        exchange.getResponseHeaders().add("Set-Cookie", Session.JWT_SESSION + "=" + jwt + "; Path=/; HttpOnly");
+        exchange.getResponseHeaders().add("Set-Cookie", Session.XSRF_TOKEN + "=" + xsrf + "; Path=/");
+        send(exchange, 200);
+    }
+
+    private static boolean take(AtomicInteger counter) {
+        int value;
+        do {
+            value = counter.get();
+            if (value <= 0) {
+                return false;
+            }
+        } while (!counter.compareAndSet(value, value - 1));
+        return true;
+    }
+
+    private int projectIndex(String key) {
+        if (key != null && key.startsWith("com.acme:project-")) {
+            try {
+                int index = Integer.parseInt(key.substring("com.acme:project-".length()));
+                if (index >= 0 && index < projects && !deleted.contains(index)) {
+                    return index;
+                }
+            } catch (NumberFormatException e) {
+                // not a generated key
+            }
+        }
+        return -1;
+    }
+
+    private boolean isProject(String key) {
+        return projectIndex(key) != -1;
+    }
+
+    private void searchProjects(HttpExchange exchange, Map<String, String> params) throws IOException {
+        int pageIndex = Integer.parseInt(params.getOrDefault("p", "1"));
+        int pageSize = Integer.parseInt(params.getOrDefault("ps", String.valueOf(DEFAULT_PAGE_SIZE)));
+        if (pageSize > MAX_PAGE_SIZE) {
+            sendError(exchange, 400, "'ps' value (" + pageSize + ") must be less than " + MAX_PAGE_SIZE);
+            return;
+        }
+        String query = params.containsKey("q") ? params.get("q").toLowerCase(Locale.ENGLISH) : null;
+        Set<String> keys = params.containsKey("projects") ? new HashSet<>(Arrays.asList(params.get("projects").split(","))) : null;
+        long analysedBefore = params.containsKey("analyzedBefore") ? OffsetDateTime.parse(params.get("analyzedBefore"), DATE_FORMAT).toEpochSecond() : -1;
+        boolean provisionedOnly = Boolean.parseBoolean(params.get("onProvisionedOnly"));
+
+        List<Integer> matches = new ArrayList<>();
+        for (int i = 0; i < projects; i++) {
+            String key = projectKey(i);
+            long analysis = analysis(i);
+            if (!deleted.contains(i) //
+                    && (keys == null || keys.contains(key)) //
+                    && (query == null || key.contains(query) || projectName(i).toLowerCase(Locale.ENGLISH).contains(query)) //
+                    && (analysedBefore == -1 || analysis != PROVISIONED && analysis < analysedBefore) //
+                    && (!provisionedOnly || analysis == PROVISIONED)) {
+                matches.add(i);
+            }
+        }
+
+        int first = (pageIndex - 1) * pageSize;
+        int last = Math.min(first + pageSize, matches.size());
+        sendJson(exchange, json -> {
+            json.writeStartObject();
+            json.writeObjectFieldStart("paging");
+            json.writeNumberField("pageIndex", pageIndex);
+            json.writeNumberField("pageSize", pageSize);
+            json.writeNumberField("total", matches.size());
+            json.writeEndObject();
+            json.writeArrayFieldStart("components");
+            for (int i = first; i < last; i++) {
+                int index = matches.get(i);
+                json.writeStartObject();
+                json.writeStringField("key", projectKey(index));
+                json.writeStringField("name", projectName(index));
+                json.writeStringField("qualifier", "TRK");
+                json.writeStringField("visibility", index % 4 == 0 ? "public" : "private");
+                long analysis = analysis(index);
+                if (analysis != PROVISIONED) {
+                    json.writeStringField("lastAnalysisDate", DATE_FORMAT.format(Instant.ofEpochSecond(analysis)));
+                    json.writeStringField("revision", String.format("5a76333e1081afc0405c%012x%08x", analysis, index));
+                }
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        });
+    }
+
+    private long analysis(int index) {
+        return analyses.getOrDefault(index, FIRST_ANALYSIS - index * 60L);
+    }
+
+    private static String projectName(int index) {
+        return "Project " + index;
+    }
+
+    private void projectLinks(HttpExchange exchange, Map<String, String> params) throws IOException {
+        int index = projectIndex(params.get("projectKey"));
+        if (index == -1) {
+            sendError(exchange, 404, "Project '" + params.get("projectKey") + "' not found");
+            return;
+        }
+        sendJson(exchange, json -> {
+            json.writeStartObject();
+            json.writeArrayFieldStart("links");
+            for (int i = 0; i < LINK_TYPES.length; i++) {
+                json.writeStartObject();
+                json.writeStringField("id", String.format("AX4RkwWzPzpLOm%06d", index * LINK_TYPES.length + i));
+                json.writeStringField("type", LINK_TYPES[i]);
+                json.writeStringField("url", "https://acme.com/" + LINK_TYPES[i] + "/project-" + index);
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        });
+    }
+
+    private void almBinding(HttpExchange exchange, Map<String, String> params) throws IOException {
+        int index = projectIndex(params.get("project"));
+        if (index == -1) {
+            sendError(exchange, 404, "Project '" + params.get("project") + "' not found");
+            return;
+        }
+        sendJson(exchange, json -> {
+            json.writeStartObject();
+            json.writeStringField("key", "bitbucket-cloud");
+            json.writeStringField("alm", "bitbucketcloud");
+            json.writeStringField("repository", "project-" + index);
+            json.writeBooleanField("monorepo", false);
+            json.writeEndObject();
+        });
+    }
+
+    private void listWebhooks(HttpExchange exchange, Map<String, String> params) throws IOException {
+        List<Webhook> result = webhooks.get(params.getOrDefault("project", ""));
+        if (result == null) {
+            sendError(exchange, 404, "Project '" + params.get("project") + "' not found");
+            return;
+        }
+        sendJson(exchange, json -> {
+            json.writeStartObject();
+            json.writeArrayFieldStart("webhooks");
+            for (Webhook webhook : result) {
+                writeWebhook(json, webhook);
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        });
+    }
+
+    private void createWebhook(HttpExchange exchange, Map<String, String> params) throws IOException {
+        List<Webhook> target = webhooks.get(params.getOrDefault("project", ""));
+        if (target == null) {
+            sendError(exchange, 404, "Project '" + params.get("project") + "' not found");
+            return;
+        }
+        Webhook webhook = newWebhook(params.get("name"), params.get("url"), params.get("secret"));
+        target.add(webhook);
+        sendJson(exchange, json -> {
+            json.writeStartObject();
+            json.writeFieldName("webhook");
+            writeWebhook(json, webhook);
+            json.writeEndObject();
+        });
+    }
+
+    private void deleteWebhook(HttpExchange exchange, Map<String, String> params) throws IOException {
+        String key = params.get("webhook");
+        for (List<Webhook> candidates : webhooks.values()) {
+            if (candidates.removeIf(webhook -> webhook.getKey().equals(key))) {
+                send(exchange, 204);
+                return;
+            }
+        }
+        sendError(exchange, 404, "No webhook with key '" + key + "'");
+    }
+
+    private Webhook newWebhook(String name, String url, String secret) {
+        Webhook webhook = new Webhook();
+        webhook.setKey(String.format("AX8MFZxKIQ7HBt-%06d", webhookSequence.incrementAndGet()));
+        webhook.setName(name);
+        webhook.setURL(url);
+        webhook.setSecret(secret);
+        return webhook;
+    }
+
+    private static void writeWebhook(JsonGenerator json, Webhook webhook) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("key", webhook.getKey());
+        json.writeStringField("name", webhook.getName());
+        json.writeStringField("url", webhook.getURL());
+        if (webhook.getSecret() != null) {
+            json.writeStringField("secret", webhook.getSecret());
+        }
+        json.writeEndObject();
+    }
+
+    private static Map<String, String> params(HttpExchange exchange) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                int idx = param.indexOf('=');
+                if (idx != -1) {
+                    params.put(param.substring(0, idx), URLDecoder.decode(param.substring(idx + 1), "UTF-8"));
+                }
+            }
+        }
+        return params;
+    }
+
+    private interface JsonBody {
+        void write(JsonGenerator json) throws IOException;
+    }
+
+    private void sendJson(HttpExchange exchange, JsonBody body) throws IOException {
+        sendJson(exchange, 200, body);
+    }
+
+    private void sendJson(HttpExchange exchange, int status, JsonBody body) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+        try (JsonGenerator json = jsonFactory.createGenerator(buffer)) {
+            body.write(json);
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        if (status == 200 && "GET".equals(exchange.getRequestMethod())) {
+            // the entity tag changes with the content, as a real server does
+            String etag = '"' + Integer.toHexString(Arrays.hashCode(buffer.toByteArray())) + '"';
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.increment();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+        }
+        exchange.sendResponseHeaders(status, buffer.size());
+        if (status == 200 && take(truncations)) {
+            OutputStream os = exchange.getResponseBody();
+            os.write(buffer.toByteArray(), 0, buffer.size() / 2);
+            os.flush();
+            // the server closes the connection of a handler that fails
+            throw new IOException("Response truncated");
+        }
+        if (status == 200 && take(stalls)) {
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(buffer.toByteArray(), 0, buffer.size() / 2);
+                os.flush();
+                try {
+                    TimeUnit.NANOSECONDS.sleep(stall.toNanos());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                os.write(buffer.toByteArray(), buffer.size() / 2, buffer.size() - buffer.size() / 2);
+            }
+            return;
+        }
+        try (OutputStream os = exchange.getResponseBody()) {
+            buffer.writeTo(os);
+        }
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        sendJson(exchange, status, json -> {
+            json.writeStartObject();
+            json.writeArrayFieldStart("errors");
+            json.writeStartObject();
+            json.writeStringField("msg", message);
+            json.writeEndObject();
+            json.writeEndArray();
+            json.writeEndObject();
+        });
+    }
+
+    private static void send(HttpExchange exchange, int status) throws IOException {
+        // the JDK server keeps the connection alive only if the request has
+        // been fully read before a response without body is sent
+        exchange.getRequestBody().close();
+        exchange.sendResponseHeaders(status, -1);
+        exchange.close();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.core5.http.HttpStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.nfalco79.sonarqube.client.Credentials.CredentialsBuilder;
+import com.github.nfalco79.sonarqube.client.SonarqubeStubServer.Latency;
+import com.github.nfalco79.sonarqube.client.model.ALMSettings;
+import com.github.nfalco79.sonarqube.client.model.Project;
+import com.github.nfalco79.sonarqube.client.model.Webhook;
+
+public class StubServerAsyncClientTest {
+
+    private SonarqubeStubServer server;
+    private SonarqubeAsyncClient client;
+
+    @Before
+    public void setup() throws IOException {
+        server = new SonarqubeStubServer(1234);
+        // a single connection makes visible a request left in flight
+        client = new SonarqubeAsyncClient(server.getURL(), CredentialsBuilder.apiToken("0123456789"), 1);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void all_pages_are_fetched() throws Exception {
+        List<Project> projects = client.getProjects().get(10, TimeUnit.SECONDS);
+        assertThat(projects).hasSize(1234);
+        assertThat(projects.get(1233).getKey()).isEqualTo(SonarqubeStubServer.projectKey(1233));
+        assertThat(server.getRequestCount("/api/projects/search")).isEqualTo(3);
+    }
+
+    @Test
+    public void error_response_completes_exceptionally() throws Exception {
+        server.failNext(1, HttpStatus.SC_INTERNAL_SERVER_ERROR, null);
+        assertThatThrownBy(() -> client.getWebhooks(SonarqubeStubServer.projectKey(3)).get(10, TimeUnit.SECONDS)) //
+                .isInstanceOf(ExecutionException.class) //
+                .getCause() //
+                .isInstanceOfSatisfying(ClientException.class, e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.SC_INTERNAL_SERVER_ERROR));
+
+        List<Webhook> webhooks = client.getWebhooks(SonarqubeStubServer.projectKey(3)).get(10, TimeUnit.SECONDS);
+        assertThat(webhooks).hasSize(1);
+    }
+
+    @Test
+    public void cancel_aborts_the_request_in_flight() throws Exception {
+        server.setLatency(Latency.fixed(Duration.ofSeconds(5)));
+        CompletableFuture<List<Webhook>> webhooks = client.getWebhooks(SonarqubeStubServer.projectKey(3));
+        Thread.sleep(200);
+        assertThat(webhooks.cancel(true)).isTrue();
+
+        // the connection is released at once instead of after the slow response
+        server.setLatency(Latency.none());
+        ALMSettings settings = client.getALMSettings(SonarqubeStubServer.projectKey(7)).get(2, TimeUnit.SECONDS);
+        assertThat(settings.getRepository()).isEqualTo("project-7");
+    }
+
+    @Test
+    public void cancel_aborts_the_pages_in_flight() throws Exception {
+        server.setLatency(Latency.fixed(Duration.ofSeconds(5)));
+        CompletableFuture<List<Project>> projects = client.getProjects();
+        Thread.sleep(200);
+        assertThat(projects.cancel(true)).isTrue();
+
+        server.setLatency(Latency.none());
+        ALMSettings settings = client.getALMSettings(SonarqubeStubServer.projectKey(7)).get(2, TimeUnit.SECONDS);
+        assertThat(settings.getRepository()).isEqualTo("project-7");
+    }
+
+    @Test
+    public void throttled_request_is_retried_after_delay() throws Exception {
+        server.failNext(1, HttpStatus.SC_TOO_MANY_REQUESTS, Duration.ofSeconds(1));
+        long start = System.nanoTime();
+        ALMSettings settings = client.getALMSettings(SonarqubeStubServer.projectKey(7)).get(10, TimeUnit.SECONDS);
+        assertThat(settings.getRepository()).isEqualTo("project-7");
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofSeconds(1));
+        assertThat(server.getRequestCount("/api/alm_settings/get_binding")).isEqualTo(2);
+    }
+
+    @Test
+    public void failed_page_fails_the_list_at_once() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        // the second page fails while the last one is slow
+        server.setLatency(() -> {
+            int request = requests.incrementAndGet();
+            if (request == 2) {
+                server.failNext(1, HttpStatus.SC_INTERNAL_SERVER_ERROR, null);
+            }
+            return request == 3 ? TimeUnit.SECONDS.toNanos(5) : 0;
+        });
+        CompletableFuture<List<Project>> projects = client.getProjects();
+        assertThatThrownBy(() -> projects.get(2, TimeUnit.SECONDS)) //
+                .isInstanceOf(ExecutionException.class) //
+                .getCause() //
+                .isInstanceOfSatisfying(ClientException.class, e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.SC_INTERNAL_SERVER_ERROR));
+
+        // the slow page has been cancelled and its connection released
+        server.setLatency(Latency.none());
+        ALMSettings settings = client.getALMSettings(SonarqubeStubServer.projectKey(7)).get(2, TimeUnit.SECONDS);
+        assertThat(settings.getRepository()).isEqualTo("project-7");
+    }
+
+    @Test
+    public void dry_run_sends_no_write_request() throws Exception {
+        client.setDryRun(true);
+        Webhook webhook = new Webhook();
+        webhook.setName("jenkins");
+        webhook.setURL("https://ci.acme.com/sonarqube-webhook/");
+
+        assertThat(client.addWebhook(SonarqubeStubServer.projectKey(3), webhook).get(2, TimeUnit.SECONDS)).isSameAs(webhook);
+        client.deleteWebhook("AU-Tpxb--iU5OvuD2FLy").get(2, TimeUnit.SECONDS);
+        assertThat(server.getRequestCount("/api/webhooks/create")).isZero();
+        assertThat(server.getRequestCount("/api/webhooks/delete")).isZero();
+    }
+
+}
@@ -0,0 +1,470 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.hc.core5.http.HttpStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.nfalco79.sonarqube.client.Credentials.CredentialsBuilder;
+import com.github.nfalco79.sonarqube.client.SonarqubeStubServer.Latency;
+import com.github.nfalco79.sonarqube.client.cache.LRUResponseCache;
+import com.github.nfalco79.sonarqube.client.limit.AIMDLimiter;
+import com.github.nfalco79.sonarqube.client.metrics.EndpointMetrics;
+import com.github.nfalco79.sonarqube.client.metrics.InMemoryMetrics;
+import com.github.nfalco79.sonarqube.client.metrics.RequestEvent;
+import com.github.nfalco79.sonarqube.client.model.ALMSettings;
+import com.github.nfalco79.sonarqube.client.model.Project;
+import com.github.nfalco79.sonarqube.client.model.Webhook;
+
+public class StubServerClientTest {
+
+    private SonarqubeStubServer server;
+    private SonarqubeServerClient client;
+
+    @Before
+    public void setup() throws IOException {
+        server = new SonarqubeStubServer(1234);
+        client = new SonarqubeServerClient(server.getURL(), CredentialsBuilder.apiToken("0123456789"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void all_pages_are_fetched() throws Exception {
+        List<Project> projects = client.getProjects();
+        assertThat(projects).hasSize(1234);
+        assertThat(projects.get(1233).getKey()).isEqualTo(SonarqubeStubServer.projectKey(1233));
+        assertThat(server.getRequestCount("/api/projects/search")).isEqualTo(3);
+    }
+
+    @Test
+    public void projects_are_looked_up_in_batches() throws Exception {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 1234; i++) {
+            keys.add(SonarqubeStubServer.projectKey(i));
+        }
+        keys.add("com.acme:unknown");
+
+        Map<String, Optional<Project>> projects = client.getProjectsByKeys(keys);
+        assertThat(projects.keySet()).containsExactlyElementsOf(keys);
+        assertThat(projects.get(SonarqubeStubServer.projectKey(1233))).hasValueSatisfying(project -> assertThat(project.getName()).isEqualTo("Project 1233"));
+        assertThat(projects.get("com.acme:unknown")).isEmpty();
+        // batches are limited by the URI length before the number of keys
+        assertThat(server.getRequestCount("/api/projects/search")).isBetween(4L, 8L);
+    }
+
+    @Test
+    public void iteration_stopped_early_is_closed() throws Exception {
+        CloseableIterator<Project> projects = client.iterateProjects(null);
+        try (CloseableIterator<Project> iterator = projects) {
+            assertThat(iterator.next().getKey()).isEqualTo(SonarqubeStubServer.projectKey(0));
+        }
+        assertThat(projects.hasNext()).isFalse();
+        // the first page and at most the read-ahead of the second one
+        assertThat(server.getRequestCount("/api/projects/search")).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    public void alm_settings_are_delivered_as_they_complete() throws Exception {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            keys.add(SonarqubeStubServer.projectKey(i));
+        }
+        keys.add("com.acme:unknown");
+        // the first declared project is the slowest to answer
+        server.slowDown(keys.get(0), Duration.ofSeconds(1));
+
+        long start = System.nanoTime();
+        long[] firstDelivery = new long[1];
+        List<String> failed = new ArrayList<>();
+        ALMBindings bindings = client.getALMSettings(keys, (key, settings) -> {
+            if (firstDelivery[0] == 0) {
+                firstDelivery[0] = System.nanoTime();
+            }
+        }, (key, e) -> failed.add(key));
+
+        assertThat(Duration.ofNanos(firstDelivery[0] - start)).isLessThan(Duration.ofMillis(500));
+        assertThat(bindings.getSettings()).hasSize(5);
+        assertThat(failed).containsExactly("com.acme:unknown");
+        assertThat(bindings.getFailures()).containsOnlyKeys("com.acme:unknown");
+    }
+
+    @Test
+    public void expired_entry_is_revalidated_without_body() throws Exception {
+        LRUResponseCache cache = new LRUResponseCache(10, Duration.ofMillis(200));
+        client.setResponseCache(cache);
+        String projectKey = SonarqubeStubServer.projectKey(7);
+        ALMSettings settings = client.getALMSettings(projectKey);
+
+        Thread.sleep(300);
+        assertThat(client.getALMSettings(projectKey)).isSameAs(settings);
+        assertThat(server.getRequestCount("/api/alm_settings/get_binding")).isEqualTo(2);
+        assertThat(server.getNotModifiedCount()).isEqualTo(1);
+
+        // the revalidated entry is fresh again
+        assertThat(client.getALMSettings(projectKey)).isSameAs(settings);
+        assertThat(server.getRequestCount("/api/alm_settings/get_binding")).isEqualTo(2);
+    }
+
+    @Test
+    public void throttled_request_is_retried_after_delay() throws Exception {
+        server.failNext(1, HttpStatus.SC_TOO_MANY_REQUESTS, Duration.ofSeconds(1));
+        ALMSettings settings = client.getALMSettings(SonarqubeStubServer.projectKey(7));
+        assertThat(settings.getRepository()).isEqualTo("project-7");
+        assertThat(server.getRequestCount("/api/alm_settings/get_binding")).isEqualTo(2);
+    }
+
+    @Test
+    public void dropped_connection_is_retried() throws Exception {
+        server.dropNext(1);
+        assertThat(client.getWebhooks(SonarqubeStubServer.projectKey(3))).hasSize(1);
+        assertThat(server.getRequestCount("/api/webhooks/list")).isEqualTo(2);
+    }
+
+    @Test
+    public void projects_of_a_page_cut_in_half_are_delivered_once() throws Exception {
+        server.truncateNext(1);
+        List<String> keys = new ArrayList<>();
+        client.forEachProject(null, project -> keys.add(project.getKey()));
+        assertThat(keys).hasSize(1234).doesNotHaveDuplicates();
+        assertThat(keys.get(1233)).isEqualTo(SonarqubeStubServer.projectKey(1233));
+        // three pages, the truncated one sent twice
+        assertThat(server.getRequestCount("/api/projects/search")).isEqualTo(4);
+    }
+
+    @Test
+    public void create_webhook_is_not_retried_when_response_is_lost() throws Exception {
+        server.dropNext(1);
+        Webhook webhook = new Webhook();
+        webhook.setName("Jenkins");
+        webhook.setURL("https://ci.acme.com/jenkins/sonarqube-webhook/");
+        assertThatThrownBy(() -> client.addWebhook(SonarqubeStubServer.projectKey(5), webhook)).isInstanceOf(ClientException.class);
+        assertThat(server.getRequestCount("/api/webhooks/create")).isEqualTo(1);
+    }
+
+    @Test
+    public void create_webhook_is_retried_when_throttled() throws Exception {
+        server.failNext(1, HttpStatus.SC_TOO_MANY_REQUESTS, Duration.ZERO);
+        Webhook webhook = new Webhook();
+        webhook.setName("Jenkins");
+        webhook.setURL("https://ci.acme.com/jenkins/sonarqube-webhook/");
+        assertThat(client.addWebhook(SonarqubeStubServer.projectKey(5), webhook).getKey()).isNotNull();
+        assertThat(server.getRequestCount("/api/webhooks/create")).isEqualTo(2);
+    }
+
+    @Test
+    public void unavailable_server_without_retries() throws Exception {
+        client.setRetry(0);
+        server.failNext(1, HttpStatus.SC_SERVICE_UNAVAILABLE, null);
+        assertThatThrownBy(() -> client.getProjectLinks(SonarqubeStubServer.projectKey(1))) //
+                .isInstanceOfSatisfying(ClientException.class, e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.SC_SERVICE_UNAVAILABLE));
+    }
+
+    @Test
+    public void circuit_breaker_fails_fast_and_recovers_after_health_check() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker();
+        breaker.setWindowSize(4);
+        breaker.setMinimumCalls(4);
+        breaker.setOpenDuration(Duration.ofMillis(300));
+        client.setCircuitBreaker(breaker);
+        client.setRetry(0);
+
+        String projectKey = SonarqubeStubServer.projectKey(3);
+        server.failNext(4, HttpStatus.SC_INTERNAL_SERVER_ERROR, null);
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> client.getWebhooks(projectKey)).isInstanceOfSatisfying(ClientException.class, //
+                    e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.SC_INTERNAL_SERVER_ERROR));
+        }
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        assertThatThrownBy(() -> client.getWebhooks(projectKey)).isInstanceOf(CircuitBreakerOpenException.class);
+        assertThat(server.getRequestCount("/api/webhooks/list")).isEqualTo(4);
+
+        Thread.sleep(300);
+        assertThat(client.getWebhooks(projectKey)).hasSize(1);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(server.getRequestCount("/api/authentication/validate")).isEqualTo(1);
+    }
+
+    @Test
+    public void circuit_breaker_closes_on_a_server_that_rejects_an_expired_session() throws Exception {
+        client.close();
+        client = new SonarqubeServerClient(server.getURL(), CredentialsBuilder.basic("admin", "secret"));
+        client.login();
+        CircuitBreaker breaker = new CircuitBreaker();
+        breaker.setWindowSize(2);
+        breaker.setMinimumCalls(2);
+        breaker.setOpenDuration(Duration.ofMillis(300));
+        client.setCircuitBreaker(breaker);
+        client.setRetry(0);
+
+        server.failNext(2, HttpStatus.SC_INTERNAL_SERVER_ERROR, null);
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> client.getWebhooks()).isInstanceOf(ClientException.class);
+        }
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        // the session expires during the outage, the health check gets a 401
+        server.expireSessions();
+        Thread.sleep(300);
+        assertThat(client.getWebhooks()).isNotNull();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void aborted_health_check_does_not_keep_the_circuit_breaker_open() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker();
+        breaker.setWindowSize(2);
+        breaker.setMinimumCalls(2);
+        breaker.setOpenDuration(Duration.ofMillis(300));
+        client.setCircuitBreaker(breaker);
+        client.setRetry(0);
+
+        server.failNext(2, HttpStatus.SC_INTERNAL_SERVER_ERROR, null);
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> client.getWebhooks()).isInstanceOf(ClientException.class);
+        }
+        Thread.sleep(300);
+
+        server.setLatency(Latency.fixed(Duration.ofSeconds(1)));
+        assertThatThrownBy(() -> client.withDeadline(Deadline.after(Duration.ofMillis(100)), c -> c.getWebhooks())) //
+                .hasCauseInstanceOf(TimeoutException.class);
+        // the next caller checks the server at once
+        server.setLatency(Latency.none());
+        assertThat(client.getWebhooks()).isNotNull();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void aborted_requests_do_not_open_the_circuit_breaker() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker();
+        breaker.setWindowSize(4);
+        breaker.setMinimumCalls(4);
+        client.setCircuitBreaker(breaker);
+        client.setRetry(0);
+
+        server.setLatency(Latency.fixed(Duration.ofSeconds(1)));
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> client.withDeadline(Deadline.after(Duration.ofMillis(100)), c -> c.getWebhooks())) //
+                    .hasCauseInstanceOf(TimeoutException.class);
+        }
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        server.setLatency(Latency.none());
+        assertThat(client.getWebhooks()).isNotNull();
+    }
+
+    @Test
+    public void deadline_aborts_requests_in_flight() throws Exception {
+        server.setLatency(Latency.fixed(Duration.ofSeconds(5)));
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> client.withDeadline(Deadline.after(Duration.ofMillis(300)), SonarqubeServerClient::getProjects)) //
+                .isInstanceOf(ClientException.class) //
+                .hasCauseInstanceOf(TimeoutException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+        // the aborted connection is released by the thread that aborts it
+        for (int i = 0; i < 50 && client.getPoolStats().getLeased() > 0; i++) {
+            Thread.sleep(20);
+        }
+        assertThat(client.getPoolStats().getLeased()).isZero();
+
+        server.setLatency(Latency.none());
+        server.failNext(1, HttpStatus.SC_SERVICE_UNAVAILABLE, Duration.ofSeconds(10));
+        start = System.nanoTime();
+        // the retry would happen after the deadline
+        Deadline deadline = Deadline.after(Duration.ofSeconds(1));
+        assertThatThrownBy(() -> client.withDeadline(deadline, c -> c.getWebhooks())) //
+                .hasCauseInstanceOf(TimeoutException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+        // other operations sharing the deadline can still use the time left
+        assertThat(deadline.isExpired()).isFalse();
+        List<Webhook> webhooks = client.withDeadline(deadline, c -> c.getWebhooks());
+        assertThat(webhooks).isNotNull();
+    }
+
+    @Test
+    public void cancelled_operation_stops() throws Exception {
+        server.setLatency(Latency.fixed(Duration.ofSeconds(5)));
+        Deadline token = Deadline.never();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<Project>> projects = executor.submit(() -> client.withDeadline(token, SonarqubeServerClient::getProjects));
+            Thread.sleep(200);
+            token.cancel();
+            assertThatThrownBy(() -> projects.get(2, TimeUnit.SECONDS)).hasRootCauseInstanceOf(CancellationException.class);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void concurrent_identical_requests_are_coalesced() throws Exception {
+        server.setLatency(Latency.fixed(Duration.ofMillis(500)));
+        String projectKey = SonarqubeStubServer.projectKey(9);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<ALMSettings>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return client.getALMSettings(projectKey);
+                }));
+            }
+            start.countDown();
+            ALMSettings settings = results.get(0).get();
+            for (Future<ALMSettings> result : results) {
+                assertThat(result.get()).isSameAs(settings);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(server.getRequestCount("/api/alm_settings/get_binding")).isEqualTo(1);
+    }
+
+    @Test
+    public void coalesced_callers_wait_within_their_own_deadline() throws Exception {
+        server.setLatency(Latency.fixed(Duration.ofMillis(1000)));
+        String projectKey = SonarqubeStubServer.projectKey(9);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // the follower gives up before the leader completes
+            Future<ALMSettings> leader = executor.submit(() -> client.withDeadline(Deadline.after(Duration.ofSeconds(5)), c -> c.getALMSettings(projectKey)));
+            Thread.sleep(100);
+            long start = System.nanoTime();
+            assertThatThrownBy(() -> client.withDeadline(Deadline.after(Duration.ofMillis(200)), c -> c.getALMSettings(projectKey))) //
+                    .hasCauseInstanceOf(TimeoutException.class);
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(800));
+            assertThat(leader.get().getRepository()).isEqualTo("project-9");
+            assertThat(server.getRequestCount("/api/alm_settings/get_binding")).isEqualTo(1);
+
+            // the leader gives up, the follower makes the call again
+            Future<?> impatient = executor.submit(() -> client.withDeadline(Deadline.after(Duration.ofMillis(300)), c -> c.getALMSettings(projectKey)));
+            Thread.sleep(100);
+            ALMSettings settings = client.withDeadline(Deadline.after(Duration.ofSeconds(5)), c -> c.getALMSettings(projectKey));
+            assertThat(settings.getRepository()).isEqualTo("project-9");
+            assertThatThrownBy(impatient::get).hasRootCauseInstanceOf(TimeoutException.class);
+            assertThat(server.getRequestCount("/api/alm_settings/get_binding")).isEqualTo(3);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void cancelled_deadline_stops_waiting_for_a_permit() throws Exception {
+        client.setConcurrencyLimiter(new AIMDLimiter(1, 1, 1));
+        server.setLatency(Latency.fixed(Duration.ofSeconds(2)));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> busy = executor.submit(() -> client.getALMSettings(SonarqubeStubServer.projectKey(1)));
+            Thread.sleep(100);
+            // a deadline without timeout waits for the permit until cancelled
+            Deadline deadline = Deadline.never();
+            Future<?> waiting = executor.submit(() -> client.withDeadline(deadline, c -> c.getALMSettings(SonarqubeStubServer.projectKey(2))));
+            Thread.sleep(100);
+            long start = System.nanoTime();
+            deadline.cancel();
+            assertThatThrownBy(() -> waiting.get(1, TimeUnit.SECONDS)).hasRootCauseInstanceOf(CancellationException.class);
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(500));
+            assertThat(server.getRequestCount("/api/alm_settings/get_binding")).isEqualTo(1);
+            busy.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void metrics_by_endpoint() throws Exception {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        client.setMetricsListener(metrics);
+        server.failNext(1, HttpStatus.SC_SERVICE_UNAVAILABLE, Duration.ofSeconds(1));
+        client.getProjects();
+        client.getWebhooks(SonarqubeStubServer.projectKey(1));
+
+        EndpointMetrics search = metrics.getEndpoint("projects.search");
+        assertThat(search.getRequests()).isEqualTo(3);
+        assertThat(search.getRetries()).isEqualTo(1);
+        assertThat(search.getStatuses()).containsEntry(200, 3L);
+        assertThat(search.getResponseBytes()).isPositive();
+        assertThat(search.getTimeToFirstByte().getCount()).isEqualTo(3);
+        assertThat(metrics.getEndpoints()).containsOnlyKeys("projects.search", "webhooks.list");
+    }
+
+    @Test
+    public void session_is_used_after_login_and_renewed_when_expired() throws Exception {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        client.close();
+        client = new SonarqubeServerClient(server.getURL(), CredentialsBuilder.basic("admin", "secret"));
+        client.setMetricsListener(metrics);
+        client.login();
+        assertThat(client.isSessionOpen()).isTrue();
+
+        String projectKey = SonarqubeStubServer.projectKey(5);
+        assertThat(client.getWebhooks(projectKey)).hasSize(1);
+        Webhook webhook = new Webhook();
+        webhook.setName("Audit");
+        webhook.setURL("https://audit.acme.com/hook");
+        client.addWebhook(projectKey, webhook);
+        assertThat(server.getBasicAuthentications()).isZero();
+
+        server.expireSessions();
+        assertThat(client.getWebhooks(projectKey)).hasSize(2);
+        assertThat(server.getRequestCount("/api/authentication/login")).isEqualTo(2);
+        assertThat(server.getBasicAuthentications()).isZero();
+
+        EndpointMetrics list = metrics.getEndpoint("webhooks.list");
+        assertThat(list.getSessionRenewals()).isEqualTo(1);
+        assertThat(list.getTimeToFirstByte(RequestEvent.AUTHENTICATION_SESSION).getCount()).isEqualTo(2);
+        assertThat(list.getTimeToFirstByte(RequestEvent.AUTHENTICATION_BASIC)).isNull();
+    }
+
+    @Test
+    public void create_and_delete_webhook() throws Exception {
+        String projectKey = SonarqubeStubServer.projectKey(42);
+        Webhook webhook = new Webhook();
+        webhook.setName("Jenkins");
+        webhook.setURL("https://ci.acme.com/jenkins/sonarqube-webhook/?token=a b");
+        Webhook created = client.addWebhook(projectKey, webhook);
+        assertThat(created.getURL()).isEqualTo(webhook.getURL());
+        assertThat(client.getWebhooks(projectKey)).extracting(Webhook::getKey).contains(created.getKey());
+
+        client.deleteWebhook(created.getKey());
+        assertThat(client.getWebhooks(projectKey)).extracting(Webhook::getKey).doesNotContain(created.getKey());
+    }
+}
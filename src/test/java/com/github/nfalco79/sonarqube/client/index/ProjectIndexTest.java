@@ -0,0 +1,106 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.nfalco79.sonarqube.client.model.ALMSettings;
+import com.github.nfalco79.sonarqube.client.model.Project;
+import com.github.nfalco79.sonarqube.client.model.ProjectLink;
+
+public class ProjectIndexTest {
+
+    private ProjectIndex index;
+
+    private static Project project(String key, String name, Date analysis) {
+        Project project = new Project();
+        project.setKey(key);
+        project.setName(name);
+        project.setQualifier("TRK");
+        project.setVisibility("private");
+        project.setLastAnalysisDate(analysis);
+        project.setRevision(analysis != null ? Long.toHexString(analysis.getTime()) : null);
+        return project;
+    }
+
+    private static ProjectLink link(String type, String url) {
+        ProjectLink link = new ProjectLink();
+        link.setType(type);
+        link.setUrl(url);
+        return link;
+    }
+
+    private static ALMSettings binding(String repository) {
+        ALMSettings settings = new ALMSettings();
+        settings.setKey("bitbucket-cloud");
+        settings.setRepository(repository);
+        return settings;
+    }
+
+    @Before
+    public void setup() {
+        index = ProjectIndex.builder() //
+                .add(project("com.acme:mail", "Mail", new Date(1000))) //
+                .add(project("com.acme:calendar", "Calendar", null)) //
+                .add(project("com.acme:calendar.parent", "Calendar Parent", new Date(2000))) //
+                .add(project("org.acme:mailer", "Mailer", new Date(3000))) //
+                .add(project("com.acme:mail", "Mail duplicated", null)) //
+                .addLinks("com.acme:mail", Arrays.asList(link("scm", "https://bitbucket.org/acme/mail"), link("ci", "https://ci.acme.com/mail"))) //
+                .addLinks("org.acme:mailer", Arrays.asList(link("scm", "https://bitbucket.org/acme/mail"))) //
+                .addALMSettings("com.acme:calendar", binding("calendar")) //
+                .addALMSettings("com.acme:calendar.parent", binding("calendar")) //
+                .addALMSettings("com.acme:unknown", binding("calendar")) //
+                .build();
+    }
+
+    @Test
+    public void lookup_by_key() {
+        assertThat(index.size()).isEqualTo(4);
+        Project mail = index.get("com.acme:mail");
+        assertThat(mail.getName()).isEqualTo("Mail");
+        assertThat(mail.getQualifier()).isEqualTo("TRK");
+        assertThat(mail.getVisibility()).isEqualTo("private");
+        assertThat(mail.getLastAnalysisDate()).isEqualTo(new Date(1000));
+        assertThat(mail.getRevision()).isEqualTo("3e8");
+        assertThat(index.get("com.acme:calendar").getLastAnalysisDate()).isNull();
+        assertThat(index.get("com.acme:cal")).isNull();
+        assertThat(index.get("zzz")).isNull();
+    }
+
+    @Test
+    public void search() {
+        assertThat(index.searchByKeyPrefix("com.acme:cal")).extracting(Project::getKey) //
+                .containsExactly("com.acme:calendar", "com.acme:calendar.parent");
+        assertThat(index.searchByKeyPrefix("net.")).isEmpty();
+        assertThat(index.search("MAIL")).extracting(Project::getKey).containsExactly("com.acme:mail", "org.acme:mailer");
+        assertThat(index.search("parent")).extracting(Project::getKey).containsExactly("com.acme:calendar.parent");
+        assertThat(index.search("")).hasSize(4);
+    }
+
+    @Test
+    public void reverse_lookups() {
+        assertThat(index.getProjectsByRepository("calendar")).containsExactly("com.acme:calendar", "com.acme:calendar.parent");
+        assertThat(index.getProjectsByRepository("mail")).isEmpty();
+        assertThat(index.getProjectsByLink("https://bitbucket.org/acme/mail")).containsExactly("com.acme:mail", "org.acme:mailer");
+        assertThat(index.getProjectsByLink("https://ci.acme.com/mail")).containsExactly("com.acme:mail");
+    }
+}
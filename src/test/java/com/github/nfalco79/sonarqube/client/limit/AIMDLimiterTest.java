@@ -0,0 +1,115 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client.limit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.github.nfalco79.sonarqube.client.limit.ConcurrencyLimiter.Permit;
+
+public class AIMDLimiterTest {
+
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static void saturate(AIMDLimiter limiter, long rtt, int rounds) throws InterruptedException {
+        for (int round = 0; round < rounds; round++) {
+            List<Permit> permits = new ArrayList<>();
+            for (int i = limiter.getLimit(); i > 0; i--) {
+                permits.add(limiter.acquire());
+            }
+            permits.forEach(permit -> permit.onSuccess(rtt));
+        }
+    }
+
+    @Test
+    public void grows_while_latency_is_flat() throws Exception {
+        AIMDLimiter limiter = new AIMDLimiter(4, 1, 20);
+        saturate(limiter, RTT, 10);
+        assertThat(limiter.getLimit()).isGreaterThan(6);
+        saturate(limiter, RTT, 50);
+        assertThat(limiter.getLimit()).isEqualTo(20);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    public void halves_once_per_burst_of_rejections() throws Exception {
+        AIMDLimiter limiter = new AIMDLimiter(16, 1, 20);
+        saturate(limiter, TimeUnit.SECONDS.toNanos(10), 1);
+        List<Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            permits.add(limiter.acquire());
+        }
+        permits.forEach(Permit::onDropped);
+        assertThat(limiter.getLimit()).isEqualTo(8);
+    }
+
+    @Test
+    public void backs_off_on_latency_spike() throws Exception {
+        AIMDLimiter limiter = new AIMDLimiter(10, 1, 20);
+        saturate(limiter, RTT, 1);
+        int limit = limiter.getLimit();
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire().onSuccess(RTT * 10);
+        }
+        assertThat(limiter.getLimit()).isLessThan(limit);
+    }
+
+    @Test
+    public void slower_endpoint_is_not_a_latency_spike() throws Exception {
+        AIMDLimiter limiter = new AIMDLimiter(10, 1, 20);
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire("alm_settings.get_binding").onSuccess(RTT);
+        }
+        int limit = limiter.getLimit();
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire("projects.search").onSuccess(RTT * 10);
+        }
+        assertThat(limiter.getLimit()).isGreaterThanOrEqualTo(limit);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire("alm_settings.get_binding").onSuccess(RTT * 10);
+        }
+        assertThat(limiter.getLimit()).isLessThan(limit);
+    }
+
+    @Test
+    public void blocks_when_limit_is_reached() throws Exception {
+        AIMDLimiter limiter = new AIMDLimiter(1, 1, 1);
+        Permit permit = limiter.acquire();
+        AtomicBoolean acquired = new AtomicBoolean();
+        Thread waiter = new Thread(() -> {
+            try {
+                limiter.acquire().onIgnore();
+                acquired.set(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+        waiter.join(200);
+        assertThat(acquired).isFalse();
+
+        permit.onIgnore();
+        waiter.join(5000);
+        assertThat(acquired).isTrue();
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+    @Test
+    public void bucket_bounds_are_contiguous() {
+        for (int i = 1; i < 3712; i++) {
+            long low = Histogram.highestValueAt(i - 1) + 1;
+            assertThat(Histogram.indexOf(low)).isEqualTo(i);
+            assertThat(Histogram.indexOf(Histogram.highestValueAt(i))).isEqualTo(i);
+        }
+        assertThat(Histogram.indexOf(Long.MAX_VALUE)).isEqualTo(3711);
+    }
+
+    @Test
+    public void percentiles_within_relative_error() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1000);
+        }
+        assertThat(histogram.getCount()).isEqualTo(100_000);
+        assertThat(histogram.getMax()).isEqualTo(100_000_000);
+        assertThat((double) histogram.getValueAtPercentile(50)).isCloseTo(50_000_000, within(50_000_000 * 0.016));
+        assertThat((double) histogram.getValueAtPercentile(99)).isCloseTo(99_000_000, within(99_000_000 * 0.016));
+        assertThat(histogram.getValueAtPercentile(100)).isEqualTo(100_000_000);
+        assertThat(histogram.getMean()).isCloseTo(50_000_500, within(1d));
+
+        histogram.reset();
+        assertThat(histogram.getValueAtPercentile(99)).isZero();
+    }
+}
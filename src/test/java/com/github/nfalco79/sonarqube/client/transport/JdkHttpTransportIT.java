@@ -0,0 +1,94 @@
+/*
+ * Copyright 2022 Falco Nikolas
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.sonarqube.client.transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.hc.core5.http.HttpStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.nfalco79.sonarqube.client.ClientException;
+import com.github.nfalco79.sonarqube.client.Credentials.CredentialsBuilder;
+import com.github.nfalco79.sonarqube.client.Deadline;
+import com.github.nfalco79.sonarqube.client.SonarqubeServerClient;
+import com.github.nfalco79.sonarqube.client.SonarqubeStubServer;
+import com.github.nfalco79.sonarqube.client.model.Project;
+import com.github.nfalco79.sonarqube.client.model.Webhook;
+
+/**
+ * Runs against the packaged multi-release jar, where the Java 11 version of
+ * the transport is available.
+ */
+public class JdkHttpTransportIT {
+
+    private SonarqubeStubServer server;
+    private SonarqubeServerClient client;
+
+    @Before
+    public void setup() throws IOException {
+        server = new SonarqubeStubServer(1234);
+        client = new SonarqubeServerClient(server.getURL(), CredentialsBuilder.apiToken("0123456789"), new JdkHttpTransport());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void requests_through_java_net_http() throws Exception {
+        assertThat(JdkHttpTransport.isSupported()).isTrue();
+        assertThat(client.testConnection()).isTrue();
+
+        List<Project> projects = client.getProjects();
+        assertThat(projects).hasSize(1234);
+        assertThat(server.getRequestCount("/api/projects/search")).isEqualTo(3);
+
+        String projectKey = SonarqubeStubServer.projectKey(1);
+        Webhook webhook = new Webhook();
+        webhook.setName("Jenkins");
+        webhook.setURL("https://ci.acme.com/jenkins/");
+        Webhook created = client.addWebhook(projectKey, webhook);
+        assertThat(client.getWebhooks(projectKey)).extracting(Webhook::getKey).contains(created.getKey());
+        client.deleteWebhook(created.getKey());
+        assertThat(client.getWebhooks(projectKey)).extracting(Webhook::getKey).doesNotContain(created.getKey());
+    }
+
+    @Test
+    public void deadline_aborts_a_stalled_body() throws Exception {
+        server.stallNext(1, Duration.ofSeconds(5));
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> client.withDeadline(Deadline.after(Duration.ofMillis(300)), c -> c.getWebhooks())) //
+                .hasCauseInstanceOf(TimeoutException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+    }
+
+    @Test
+    public void error_status() throws Exception {
+        assertThatThrownBy(() -> client.getALMSettings("com.acme:unknown")) //
+                .isInstanceOfSatisfying(ClientException.class, e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.SC_NOT_FOUND));
+        assertThat(client.getPoolStats().getMax()).isZero();
+    }
+}